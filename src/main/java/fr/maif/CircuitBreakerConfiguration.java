@@ -0,0 +1,147 @@
+package fr.maif;
+
+import java.time.Duration;
+
+/**
+ * This class allows to configure circuit breaker protecting calls to remote Izanami.
+ * Breaker opens when failure rate or slow call rate of last calls reaches its threshold. While it's open, calls
+ * fail immediately, without reaching remote Izanami, and last known values or error strategy are used instead.
+ * Once open duration is elapsed, a few probe calls are let through to decide whether it should close or open again.
+ */
+public class CircuitBreakerConfiguration {
+    /**
+     * Ratio of failed calls (errors, timeouts and 5xx responses) above which breaker opens.
+     */
+    public final double failureRateThreshold;
+
+    /**
+     * Ratio of slow calls above which breaker opens.
+     */
+    public final double slowCallRateThreshold;
+
+    /**
+     * Duration above which a call is considered slow.
+     */
+    public final Duration slowCallDuration;
+
+    /**
+     * Number of last calls used to compute failure and slow call rates.
+     */
+    public final int slidingWindowSize;
+
+    /**
+     * Minimum number of calls recorded before rates are evaluated.
+     */
+    public final int minimumNumberOfCalls;
+
+    /**
+     * Duration during which breaker stays open before letting probe calls through.
+     */
+    public final Duration waitDurationInOpenState;
+
+    /**
+     * Number of probe calls let through when breaker is half-open.
+     */
+    public final int permittedCallsInHalfOpenState;
+
+    private CircuitBreakerConfiguration(Builder builder) {
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallDuration = builder.slowCallDuration;
+        slidingWindowSize = builder.slidingWindowSize;
+        minimumNumberOfCalls = builder.minimumNumberOfCalls;
+        waitDurationInOpenState = builder.waitDurationInOpenState;
+        permittedCallsInHalfOpenState = builder.permittedCallsInHalfOpenState;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private double failureRateThreshold = 0.5;
+        private double slowCallRateThreshold = 1;
+        private Duration slowCallDuration = Duration.ofSeconds(5L);
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private Duration waitDurationInOpenState = Duration.ofSeconds(30L);
+        private int permittedCallsInHalfOpenState = 3;
+
+        private Builder() {
+        }
+
+        /**
+         * @param val ratio of failed calls above which breaker opens, between 0 (excluded) and 1, default is 0.5
+         * @return updated builder
+         */
+        public Builder withFailureRateThreshold(double val) {
+            if (val <= 0 || val > 1) {
+                throw new IllegalArgumentException("Failure rate threshold must be greater than 0 and lower or equal to 1");
+            }
+            failureRateThreshold = val;
+            return this;
+        }
+
+        /**
+         * @param threshold ratio of slow calls above which breaker opens, between 0 (excluded) and 1, default is 1
+         * @param duration duration above which a call is considered slow, default is 5 seconds
+         * @return updated builder
+         */
+        public Builder withSlowCallRateThreshold(double threshold, Duration duration) {
+            if (threshold <= 0 || threshold > 1) {
+                throw new IllegalArgumentException("Slow call rate threshold must be greater than 0 and lower or equal to 1");
+            }
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Slow call duration must be positive");
+            }
+            slowCallRateThreshold = threshold;
+            slowCallDuration = duration;
+            return this;
+        }
+
+        /**
+         * @param windowSize number of last calls used to compute rates, default is 20
+         * @param minimumCalls minimum number of recorded calls before rates are evaluated, default is 10
+         * @return updated builder
+         */
+        public Builder withSlidingWindow(int windowSize, int minimumCalls) {
+            if (windowSize <= 0 || minimumCalls <= 0) {
+                throw new IllegalArgumentException("Sliding window size and minimum number of calls must be positive");
+            }
+            if (minimumCalls > windowSize) {
+                throw new IllegalArgumentException("Minimum number of calls can't be greater than sliding window size");
+            }
+            slidingWindowSize = windowSize;
+            minimumNumberOfCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param val duration during which breaker stays open before letting probe calls through, default is 30 seconds
+         * @return updated builder
+         */
+        public Builder withWaitDurationInOpenState(Duration val) {
+            if (val.isNegative()) {
+                throw new IllegalArgumentException("Wait duration in open state can't be negative");
+            }
+            waitDurationInOpenState = val;
+            return this;
+        }
+
+        /**
+         * @param val number of probe calls let through when breaker is half-open, default is 3
+         * @return updated builder
+         */
+        public Builder withPermittedCallsInHalfOpenState(int val) {
+            if (val <= 0) {
+                throw new IllegalArgumentException("Permitted calls in half-open state must be positive");
+            }
+            permittedCallsInHalfOpenState = val;
+            return this;
+        }
+
+        public CircuitBreakerConfiguration build() {
+            return new CircuitBreakerConfiguration(this);
+        }
+    }
+}
@@ -14,13 +14,17 @@ public class ClientConfiguration {
     public final IzanamiHttpClient httpClient;
     public final Duration callTimeout;
     public final BooleanCastStrategy castStrategy;
+    public final IzanamiClock clock;
+    public final TransportConfiguration transportConfiguration;
     public ClientConfiguration(
             IzanamiConnectionInformation connectionInformation,
             FeatureClientErrorStrategy errorStrategy,
             FeatureCacheConfiguration cacheConfiguration,
             IzanamiHttpClient httpClient,
             Duration callTimeout,
-            BooleanCastStrategy castStrategy
+            BooleanCastStrategy castStrategy,
+            IzanamiClock clock,
+            TransportConfiguration transportConfiguration
     ) {
         this.connectionInformation = connectionInformation;
         this.errorStrategy = errorStrategy;
@@ -28,6 +32,20 @@ public class ClientConfiguration {
         this.httpClient = httpClient;
         this.callTimeout = callTimeout;
         this.castStrategy = castStrategy;
+        this.clock = clock;
+        this.transportConfiguration = transportConfiguration;
+    }
+
+    @Deprecated
+    public ClientConfiguration(
+            IzanamiConnectionInformation connectionInformation,
+            FeatureClientErrorStrategy errorStrategy,
+            FeatureCacheConfiguration cacheConfiguration,
+            IzanamiHttpClient httpClient,
+            Duration callTimeout,
+            BooleanCastStrategy castStrategy
+    ) {
+        this(connectionInformation, errorStrategy, cacheConfiguration, httpClient, callTimeout, castStrategy, IzanamiClock.systemClock(), TransportConfiguration.defaults());
     }
 
     @Deprecated
@@ -44,5 +62,7 @@ public class ClientConfiguration {
         this.httpClient = httpClient;
         this.callTimeout = callTimeout;
         this.castStrategy = BooleanCastStrategy.LAX;
+        this.clock = IzanamiClock.systemClock();
+        this.transportConfiguration = TransportConfiguration.defaults();
     }
 }
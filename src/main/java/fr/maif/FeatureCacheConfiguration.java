@@ -1,6 +1,10 @@
 package fr.maif;
 
+import fr.maif.features.ScriptEvaluator;
+
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Optional;
 
 /**
  * This class allows to configure cache behaviour for izanami client.
@@ -15,6 +19,27 @@ public class FeatureCacheConfiguration {
      */
     public final Duration refreshInterval;
 
+    /**
+     * Ratio of refresh interval by which each refresh delay is randomly shortened or extended, 0 means no jitter.
+     */
+    public final double refreshJitter;
+
+    /**
+     * Maximum delay between two refreshes while refreshes are failing, delay doubles after each failure until it
+     * reaches this value.
+     */
+    public final Duration refreshMaximumBackoff;
+
+    /**
+     * If present, refresh interval is halved (down to this value) each time a refresh observes changes.
+     */
+    public final Optional<Duration> minimumRefreshInterval;
+
+    /**
+     * If present, refresh interval grows by half (up to this value) each time a refresh observes no change.
+     */
+    public final Optional<Duration> maximumRefreshInterval;
+
     /**
      * Wether izanami client will received feature updates from remote server via SSE.
      */
@@ -25,11 +50,99 @@ public class FeatureCacheConfiguration {
      */
     public final Duration serverSentEventKeepAliveInterval;
 
+    /**
+     * Maximum number of features kept in cache, 0 means unbounded. Preloaded and SSE scoped features are never evicted
+     * and don't count in this limit.
+     */
+    public final long maximumSize;
+
+    /**
+     * Maximum total estimated size of cached features, in bytes, 0 means unbounded. Takes precedence over
+     * {@link FeatureCacheConfiguration#maximumSize}. Preloaded and SSE scoped features are never evicted
+     * and don't count in this limit.
+     */
+    public final long maximumWeight;
+
+    /**
+     * If present, polling mode refreshes features individually instead of refreshing the whole cache at
+     * {@link FeatureCacheConfiguration#refreshInterval}: a feature read after this delay is served from cache while
+     * it is reloaded in background.
+     */
+    public final Optional<Duration> refreshAfterWrite;
+
+    /**
+     * Delay after which a feature that was not reloaded is dropped from cache, and therefore fetched from remote
+     * Izanami on next read. Used only when {@link FeatureCacheConfiguration#refreshAfterWrite} is present.
+     */
+    public final Optional<Duration> expireAfterWrite;
+
+    /**
+     * Window during which background reloads are collected and sent as a single call.
+     * Used only when {@link FeatureCacheConfiguration#refreshAfterWrite} is present.
+     */
+    public final Duration reloadBatchWindow;
+
+    /**
+     * Number of distinct features that triggers sending a batch of background reloads before window end.
+     * Used only when {@link FeatureCacheConfiguration#refreshAfterWrite} is present.
+     */
+    public final int reloadBatchMaximumSize;
+
+    /**
+     * Maximum number of memoized evaluation results, 0 disables result memoization.
+     * Results are memoized by feature, context and user, only for features whose value doesn't depend on time.
+     */
+    public final long resultCacheMaximumSize;
+
+    /**
+     * Evaluator used to run script features locally, remote Izanami evaluates them if empty.
+     */
+    public final Optional<ScriptEvaluator> scriptEvaluator;
+
+    /**
+     * If present, remote retrievals of features missing from cache are collected during this window and sent
+     * as a single call, in polling mode.
+     */
+    public final Optional<Duration> missBatchWindow;
+
+    /**
+     * Number of distinct features that triggers sending a batch of missing features before window end.
+     * Used only when {@link FeatureCacheConfiguration#missBatchWindow} is present.
+     */
+    public final int missBatchMaximumSize;
+
+    /**
+     * If present, features missing from Izanami responses are remembered for this duration, and reported as missing
+     * without calling remote Izanami again, in polling mode.
+     */
+    public final Optional<Duration> negativeCacheTtl;
+
+    /**
+     * If present, file where cached features are persisted, and from which cache is filled when client starts.
+     */
+    public final Optional<Path> snapshotFile;
+
     private FeatureCacheConfiguration(Builder builder) {
         enabled = builder.enabled;
         useServerSentEvent = builder.useServerSentEvent;
         refreshInterval = builder.refreshInterval;
+        refreshJitter = builder.refreshJitter;
+        refreshMaximumBackoff = builder.refreshMaximumBackoff;
+        minimumRefreshInterval = builder.minimumRefreshInterval;
+        maximumRefreshInterval = builder.maximumRefreshInterval;
         serverSentEventKeepAliveInterval = builder.serverSentEventKeepAliveInterval;
+        maximumSize = builder.maximumSize;
+        maximumWeight = builder.maximumWeight;
+        refreshAfterWrite = builder.refreshAfterWrite;
+        expireAfterWrite = builder.expireAfterWrite;
+        reloadBatchWindow = builder.reloadBatchWindow;
+        reloadBatchMaximumSize = builder.reloadBatchMaximumSize;
+        resultCacheMaximumSize = builder.resultCacheMaximumSize;
+        scriptEvaluator = builder.scriptEvaluator;
+        missBatchWindow = builder.missBatchWindow;
+        missBatchMaximumSize = builder.missBatchMaximumSize;
+        negativeCacheTtl = builder.negativeCacheTtl;
+        snapshotFile = builder.snapshotFile;
     }
 
     public static Builder newBuilder() {
@@ -39,8 +152,24 @@ public class FeatureCacheConfiguration {
     public static final class Builder {
         private boolean enabled = false;
         private Duration refreshInterval = Duration.ofMinutes(10L);
+        private double refreshJitter = 0;
+        private Duration refreshMaximumBackoff = Duration.ofMinutes(30L);
+        private Optional<Duration> minimumRefreshInterval = Optional.empty();
+        private Optional<Duration> maximumRefreshInterval = Optional.empty();
         private boolean useServerSentEvent = false;
         public Duration serverSentEventKeepAliveInterval = Duration.ofSeconds(25L);
+        private long maximumSize = 0L;
+        private long maximumWeight = 0L;
+        private Optional<Duration> refreshAfterWrite = Optional.empty();
+        private Optional<Duration> expireAfterWrite = Optional.empty();
+        private Duration reloadBatchWindow = Duration.ofMillis(20L);
+        private int reloadBatchMaximumSize = 200;
+        private long resultCacheMaximumSize = 0L;
+        private Optional<ScriptEvaluator> scriptEvaluator = Optional.empty();
+        private Optional<Duration> missBatchWindow = Optional.empty();
+        private int missBatchMaximumSize = 100;
+        private Optional<Duration> negativeCacheTtl = Optional.empty();
+        private Optional<Path> snapshotFile = Optional.empty();
 
         private Builder() {
         }
@@ -63,6 +192,51 @@ public class FeatureCacheConfiguration {
             return this;
         }
 
+        /**
+         * @param val ratio of refresh interval by which each refresh delay is randomly shortened or extended,
+         *            between 0 (default, no jitter) and 1. For instance, 0.1 with a 10 minutes interval spreads
+         *            refreshes between 9 and 11 minutes, so that clients started together don't refresh together.
+         *            First refresh is also delayed by a random part of this ratio.
+         * @return updated builder
+         */
+        public Builder withRefreshJitter(double val) {
+            if (val < 0 || val > 1) {
+                throw new IllegalArgumentException("Refresh jitter must be between 0 and 1");
+            }
+            this.refreshJitter = val;
+            return this;
+        }
+
+        /**
+         * @param val maximum delay between two refreshes while refreshes are failing, default is 30 minutes.
+         *            Delay doubles after each failed refresh, and goes back to refresh interval after a successful one.
+         * @return updated builder
+         */
+        public Builder withRefreshMaximumBackoff(Duration val) {
+            if (val == null || val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("Refresh maximum backoff must be positive");
+            }
+            this.refreshMaximumBackoff = val;
+            return this;
+        }
+
+        /**
+         * Adapt refresh interval to observed change rate: it is halved each time a refresh observes changes, and grows
+         * by half each time a refresh observes no change, staying between given bounds. Refresh interval is used as
+         * initial value.
+         * @param minimum shortest refresh interval, used while features are changing often
+         * @param maximum longest refresh interval, used while features don't change
+         * @return updated builder
+         */
+        public Builder withAdaptiveRefreshInterval(Duration minimum, Duration maximum) {
+            if (minimum.isNegative() || minimum.isZero() || minimum.compareTo(maximum) > 0) {
+                throw new IllegalArgumentException("Minimum refresh interval must be positive and shorter than maximum");
+            }
+            this.minimumRefreshInterval = Optional.of(minimum);
+            this.maximumRefreshInterval = Optional.of(maximum);
+            return this;
+        }
+
         /**
          * @param val wether client should use SSE instead of polling to keep cache up to date. When using SSE,
          *            Izanami client will keep an http connection opened with Izanami backend, and get notified as soon
@@ -85,6 +259,145 @@ public class FeatureCacheConfiguration {
             return this;
         }
 
+        /**
+         * @param val maximum number of features kept in cache, 0 (default) means unbounded. Least recently used
+         *            features are evicted first, preloaded and SSE scoped features are never evicted.
+         * @return updated builder
+         */
+        public Builder withMaximumSize(long val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("Maximum size must not be negative");
+            }
+            this.maximumSize = val;
+            return this;
+        }
+
+        /**
+         * @param val maximum total estimated size of cached features, in bytes, 0 (default) means unbounded.
+         *            Takes precedence over maximum size. Preloaded and SSE scoped features are never evicted.
+         * @return updated builder
+         */
+        public Builder withMaximumWeight(long val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("Maximum weight must not be negative");
+            }
+            this.maximumWeight = val;
+            return this;
+        }
+
+        /**
+         * Use per feature stale-while-revalidate refresh instead of refreshing the whole cache at refresh interval.
+         * Reloads happening at the same time are grouped in a single remote call. Not used with SSE.
+         * @param refreshAfter delay after which a feature read from cache is reloaded in background, stale value is
+         *                     served in the meantime
+         * @param expireAfter delay after which a feature that was not reloaded is dropped from cache, and has to be
+         *                    fetched from remote Izanami on next read
+         * @return updated builder
+         */
+        public Builder withStaleWhileRevalidate(Duration refreshAfter, Duration expireAfter) {
+            if (refreshAfter.compareTo(expireAfter) >= 0) {
+                throw new IllegalArgumentException("Refresh delay must be shorter than expiration delay");
+            }
+            this.refreshAfterWrite = Optional.of(refreshAfter);
+            this.expireAfterWrite = Optional.of(expireAfter);
+            return this;
+        }
+
+        /**
+         * Use per feature stale-while-revalidate refresh, with given grouping of background reloads (by default, reloads
+         * are collected during 20 milliseconds, and at most 200 features are reloaded by a single call).
+         * @param refreshAfter delay after which a feature read from cache is reloaded in background, stale value is
+         *                     served in the meantime
+         * @param expireAfter delay after which a feature that was not reloaded is dropped from cache, and has to be
+         *                    fetched from remote Izanami on next read
+         * @param batchWindow duration during which background reloads are collected
+         * @param batchMaximumSize number of distinct features that triggers sending a batch of reloads before window end
+         * @return updated builder
+         */
+        public Builder withStaleWhileRevalidate(Duration refreshAfter, Duration expireAfter, Duration batchWindow, int batchMaximumSize) {
+            if (batchWindow.isNegative() || batchWindow.isZero()) {
+                throw new IllegalArgumentException("Batch window must be positive");
+            }
+            if (batchMaximumSize <= 0) {
+                throw new IllegalArgumentException("Batch maximum size must be positive");
+            }
+            withStaleWhileRevalidate(refreshAfter, expireAfter);
+            this.reloadBatchWindow = batchWindow;
+            this.reloadBatchMaximumSize = batchMaximumSize;
+            return this;
+        }
+
+        /**
+         * @param val maximum number of memoized evaluation results, 0 (default) disables result memoization.
+         *            Results are memoized by feature, context and user, only for features whose value doesn't depend on time.
+         * @return updated builder
+         */
+        public Builder withResultCacheMaximumSize(long val) {
+            this.resultCacheMaximumSize = val;
+            return this;
+        }
+
+        /**
+         * @param val evaluator used to run cached script features locally, no evaluator is provided by default (see
+         *            {@link ScriptEvaluator}). Script features are evaluated by remote Izanami if it's not provided,
+         *            or if it fails to evaluate them.
+         * @return updated builder
+         */
+        public Builder withScriptEvaluator(ScriptEvaluator val) {
+            this.scriptEvaluator = Optional.ofNullable(val);
+            return this;
+        }
+
+        /**
+         * Group remote retrievals of features missing from cache: requests with the same user, context and payload
+         * received during given window are sent as a single call. A request whose call timeout doesn't exceed the
+         * window is sent immediately, and batched calls never wait longer than the shortest timeout of their requests.
+         * Not used with SSE.
+         * @param window duration during which missing features are collected, a few milliseconds is usually enough
+         * @param maximumSize number of distinct features that triggers sending a batch before window end
+         * @return updated builder
+         */
+        public Builder withMissBatching(Duration window, int maximumSize) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Batch window must be positive");
+            }
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("Batch maximum size must be positive");
+            }
+            this.missBatchWindow = Optional.of(window);
+            this.missBatchMaximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Remember features that are missing from Izanami responses (deleted, or not authorized for client key),
+         * so that requesting them again doesn't trigger a remote call. Entries are cleared when the feature is
+         * retrieved or the cache is refreshed. Not used with SSE, that never requests a missing feature twice.
+         * @param val duration during which a missing feature is reported as missing without calling remote Izanami,
+         *            null disables negative caching
+         * @return updated builder
+         */
+        public Builder withNegativeCacheTtl(Duration val) {
+            if (val != null && (val.isNegative() || val.isZero())) {
+                throw new IllegalArgumentException("Negative cache TTL must be positive");
+            }
+            this.negativeCacheTtl = Optional.ofNullable(val);
+            return this;
+        }
+
+        /**
+         * Persist cached features to given file, and fill cache from it when client starts. Preloaded features found
+         * in the snapshot are available immediately, even if remote Izanami is unreachable, and are reconciled with
+         * remote Izanami as soon as possible. Snapshot is saved after each full cache refresh (or SSE feature states)
+         * and when client is closed.
+         * @param val snapshot file, it's created if it doesn't exist
+         * @return updated builder
+         */
+        public Builder withSnapshotFile(Path val) {
+            this.snapshotFile = Optional.ofNullable(val);
+            return this;
+        }
+
         /**
          * Build actual cache configuration
          * @return a new FeatureCacheConfiguration with this builder values
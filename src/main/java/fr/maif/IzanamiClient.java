@@ -1,16 +1,25 @@
 package fr.maif;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.maif.features.BatchEvaluation;
+import fr.maif.features.FeatureFootprint;
+import fr.maif.features.results.EvaluationSnapshot;
 import fr.maif.features.results.IzanamiResult;
 import fr.maif.features.values.BooleanCastStrategy;
+import fr.maif.http.CircuitBreaker;
+import fr.maif.http.CircuitBreakingHttpClient;
 import fr.maif.http.IzanamiHttpClient;
 import fr.maif.requests.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.net.URI;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +28,12 @@ import java.util.stream.Collectors;
  */
 public class IzanamiClient {
     private static final Logger LOGGER = LoggerFactory.getLogger(IzanamiClient.class);
+    /**
+     * Stands for the default HTTP client until a feature service is created, so that clients sharing an existing
+     * service don't build an HTTP client of their own
+     */
+    private static final IzanamiHttpClient DEFAULT_HTTP_CLIENT = request -> CompletableFuture.failedFuture(
+            new IllegalStateException("Default HTTP client is created with feature service"));
     private final ClientConfiguration configuration;
     private final FeatureService featureService;
     private CompletableFuture<Void> loader;
@@ -54,41 +69,114 @@ public class IzanamiClient {
             Set<String> idsToPreload,
             Optional<BooleanCastStrategy> castStrategy
     ) {
-        this.configuration = new ClientConfiguration(
+        this(connectionInformation, errorStrategy, cacheConfiguration, httpClient, callTimeout, idsToPreload, castStrategy, Optional.empty());
+    }
+
+    /**
+     * Constructor
+     * @param connectionInformation information about remote Izanami instance
+     * @param errorStrategy default error strategy to use in case client fails to fetch remote Izanami. This can be overrided at request level.
+     * @param cacheConfiguration cache configuration to use
+     * @param httpClient httpClient to use
+     * @param callTimeout timeout for remote instance http calls
+     * @param idsToPreload flag ids to preload, preloading id prevent from payin the cost of querying remote Izanami first time flags are needed
+     * @param castStrategy default strategy to use to cast non-boolean values in boolean when needed. Possible values are STRICT (trying to cast non boolean value to boolean value will fail) and LAX (empty string, numeric 0 and null are false, everything else is true).
+     * @param clock clock to use to evaluate time based activation conditions, default is system clock
+     */
+    public IzanamiClient(
+            IzanamiConnectionInformation connectionInformation,
+            Optional<FeatureClientErrorStrategy> errorStrategy,
+            Optional<FeatureCacheConfiguration> cacheConfiguration,
+            Optional<IzanamiHttpClient> httpClient,
+            Optional<Duration> callTimeout,
+            Set<String> idsToPreload,
+            Optional<BooleanCastStrategy> castStrategy,
+            Optional<IzanamiClock> clock
+    ) {
+        this(connectionInformation, errorStrategy, cacheConfiguration, httpClient, callTimeout, idsToPreload, castStrategy, clock, Optional.empty(), Optional.empty(), false);
+    }
+
+    private IzanamiClient(
+            IzanamiConnectionInformation connectionInformation,
+            Optional<FeatureClientErrorStrategy> errorStrategy,
+            Optional<FeatureCacheConfiguration> cacheConfiguration,
+            Optional<IzanamiHttpClient> httpClient,
+            Optional<Duration> callTimeout,
+            Set<String> idsToPreload,
+            Optional<BooleanCastStrategy> castStrategy,
+            Optional<IzanamiClock> clock,
+            Optional<TransportConfiguration> transportConfiguration,
+            Optional<CircuitBreakerConfiguration> circuitBreakerConfiguration,
+            boolean shared
+    ) {
+        TransportConfiguration transport = transportConfiguration.orElseGet(TransportConfiguration::defaults);
+        ClientConfiguration settings = new ClientConfiguration(
                 connectionInformation,
                 errorStrategy.orElseGet(FeatureClientErrorStrategy::nullValueStrategy),
                 cacheConfiguration.orElseGet(() -> FeatureCacheConfiguration.newBuilder().enabled(false).build()),
-                httpClient.orElseGet(IzanamiHttpClient.DefaultIzanamiHttpClient::new),
+                httpClient.orElse(DEFAULT_HTTP_CLIENT),
                 callTimeout.orElse(Duration.ofSeconds(10L)),
-                castStrategy.orElse(BooleanCastStrategy.LAX)
+                castStrategy.orElse(BooleanCastStrategy.LAX),
+                clock.orElseGet(IzanamiClock::systemClock),
+                transport
         );
+        var prewarm = new AtomicReference<CompletableFuture<Void>>(CompletableFuture.completedFuture(null));
+        BiFunction<ClientConfiguration, Set<String>, FeatureService> factory = (config, ids) -> {
+            // HTTP client, circuit breaker and connection are only created for a new service
+            IzanamiHttpClient client = config.httpClient == DEFAULT_HTTP_CLIENT
+                    ? new IzanamiHttpClient.DefaultIzanamiHttpClient(config.transportConfiguration)
+                    : config.httpClient;
+            if(config.transportConfiguration.prewarm && client instanceof IzanamiHttpClient.DefaultIzanamiHttpClient) {
+                prewarm.set(((IzanamiHttpClient.DefaultIzanamiHttpClient) client).prewarm(URI.create(config.connectionInformation.url)));
+            }
+            return newFeatureService(new ClientConfiguration(
+                    config.connectionInformation,
+                    config.errorStrategy,
+                    config.cacheConfiguration,
+                    circuitBreakerConfiguration
+                            .<IzanamiHttpClient>map(breaker -> new CircuitBreakingHttpClient(client, new CircuitBreaker(breaker)))
+                            .orElse(client),
+                    config.callTimeout,
+                    config.castStrategy,
+                    config.clock,
+                    config.transportConfiguration
+            ), ids);
+        };
 
-        if(this.configuration.cacheConfiguration.useServerSentEvent) {
+        Set<String> preload = Objects.isNull(idsToPreload) ? Set.of() : idsToPreload;
+        if(shared) {
+            this.featureService = FeatureService.shared(settings, circuitBreakerConfiguration, preload, factory);
+        } else {
+            this.featureService = factory.apply(settings, preload);
+        }
+        this.configuration = featureService.configuration();
+        if(!preload.isEmpty()) {
+            this.loader = CompletableFuture.allOf(
+                    prewarm.get(),
+                    featureService.featureStates(FeatureRequest.newFeatureRequest().withFeatures(preload))
+            );
+        } else {
+            this.loader = prewarm.get();
+        }
+    }
+
+    private static FeatureService newFeatureService(ClientConfiguration configuration, Set<String> idsToPreload) {
+        if(configuration.cacheConfiguration.useServerSentEvent) {
             LOGGER.info("Izanami client will use SSE to keep in sync");
-            var service = new SSEFeatureService(configuration);
-            if(Objects.nonNull(idsToPreload) && !idsToPreload.isEmpty()) {
-                this.loader = service.featureStates(FeatureRequest.newFeatureRequest().withFeatures(idsToPreload)).thenApply(osef -> null);
-            } else {
-                this.loader = CompletableFuture.completedFuture(null);
-            }
-            this.featureService = service;
+            return new SSEFeatureService(configuration, idsToPreload);
+        }
+        if(configuration.cacheConfiguration.enabled) {
+            LOGGER.info("Izanami client will use polling to keep in sync");
         } else {
-            if(configuration.cacheConfiguration.enabled) {
-                LOGGER.info("Izanami client will use polling to keep in sync");
-            } else {
-                LOGGER.info("Cache is disabled, Izanami client will query remote instance every time");
-            }
-            this.featureService = new FetchFeatureService(configuration);
-            if(Objects.nonNull(idsToPreload) && !idsToPreload.isEmpty()) {
-                this.loader = featureService.featureStates(FeatureRequest.newFeatureRequest().withFeatures(idsToPreload)).thenAccept(v -> {});
-            } else {
-                this.loader = CompletableFuture.completedFuture(null);
-            }
+            LOGGER.info("Cache is disabled, Izanami client will query remote instance every time");
         }
+        return new FetchFeatureService(configuration, idsToPreload);
     }
 
     /**
      * Close underlying SSE client if SSE client is used, otherwise do nothing.
+     * For a client built with {@link IzanamiClientBuilder#withSharedConnection()}, underlying connection is closed
+     * only when every client sharing it is closed.
      * @return a CompletableFuture that complete when SSE client is closed, or immediately if there is no SSE client
      */
     public CompletableFuture<Void> close() {
@@ -169,7 +257,148 @@ public class IzanamiClient {
     }
 
     /**
-     * Indicate when client is loaded. A loaded client has fetch ids to preload (if provided). If no ids were provided, client is ready immediately after its instantiation.
+     * Evaluate locally every cached feature for given user and context, without calling remote Izanami.
+     * Only features already known by the client (preloaded, previously queried or received through SSE) are evaluated,
+     * script features are not part of the result since they can't be evaluated locally.
+     * @param user user to evaluate features for
+     * @param context context to evaluate features for, may be null
+     * @return an immutable snapshot of feature values
+     */
+    public EvaluationSnapshot evaluateAll(String user, String context) {
+        return featureService.evaluateAll(user, context, Optional.empty());
+    }
+
+    /**
+     * Evaluate locally every cached feature of given project for given user and context, without calling remote Izanami.
+     * @param user user to evaluate features for
+     * @param context context to evaluate features for, may be null
+     * @param project project to evaluate features for
+     * @return an immutable snapshot of feature values
+     * @see IzanamiClient#evaluateAll(String, String)
+     */
+    public EvaluationSnapshot evaluateAll(String user, String context, String project) {
+        return featureService.evaluateAll(user, context, Optional.ofNullable(project));
+    }
+
+    /**
+     * Statistics of local feature cache: hits and misses, evictions (see {@link FeatureCacheConfiguration.Builder#withMaximumSize(long)})
+     * and time spent loading features from remote Izanami.
+     * @return feature cache statistics
+     */
+    public CacheStats cacheStats() {
+        return featureService.cacheStats();
+    }
+
+    /**
+     * Hit / miss statistics of evaluation result memoization,
+     * see {@link FeatureCacheConfiguration.Builder#withResultCacheMaximumSize(long)}.
+     * @return result memoization statistics, empty if memoization is disabled
+     */
+    public CacheStats resultCacheStats() {
+        return featureService.resultCacheStats();
+    }
+
+    /**
+     * State of circuit breaker guarding calls to remote Izanami, see
+     * {@link IzanamiClientBuilder#withCircuitBreaker(CircuitBreakerConfiguration)}.
+     * For a client built with {@link IzanamiClientBuilder#withSharedConnection()}, this is the breaker of shared connection.
+     * @return circuit breaker state, empty if no circuit breaker is configured
+     */
+    public Optional<CircuitBreaker.State> circuitBreakerState() {
+        return featureService.circuitBreaker().map(CircuitBreaker::state);
+    }
+
+    /**
+     * Estimate heap footprint of cached features. Identical strings, periods, rules, conditions and overloads
+     * of parsed features share a single instance, {@link FeatureFootprint#savedSize()} gives the memory saved this way.
+     * @return estimated footprint of cached features
+     */
+    public FeatureFootprint cacheFootprint() {
+        return FeatureFootprint.of(featureService.cachedFeatures());
+    }
+
+    /**
+     * Number of feature retrievals that were deduplicated: when concurrent requests miss the same feature
+     * (for the same user, context and payload), only one remote call is performed and shared by all of them.
+     * @return number of deduplicated feature retrievals
+     */
+    public long deduplicatedRequestCount() {
+        return featureService.deduplicatedRequestCount();
+    }
+
+    /**
+     * Number of lookups that were answered without calling remote Izanami, since requested feature was recently
+     * missing from Izanami response, see {@link FeatureCacheConfiguration.Builder#withNegativeCacheTtl(Duration)}.
+     * @return number of lookups absorbed by negative cache
+     */
+    public long negativeCacheHitCount() {
+        return featureService.negativeCacheHitCount();
+    }
+
+    /**
+     * Evaluate a boolean feature for many users at once, for instance for batch jobs.
+     * Feature is retrieved once (from cache if possible), overload matching context is resolved once,
+     * and activation is then computed locally for each user.
+     * @param feature feature id
+     * @param context context to evaluate feature for, may be null
+     * @param users users to evaluate feature for
+     * @return a CompletableFuture containing a BitSet where bit i is set if feature is active for users[i].
+     * Future fails with an IzanamiException if feature can't be retrieved or evaluated locally (script features).
+     */
+    public CompletableFuture<BitSet> batchBooleanValues(String feature, String context, String[] users) {
+        return batchEvaluation(feature, context)
+                .thenApply(evaluation -> evaluation.booleanValues(users, configuration.castStrategy));
+    }
+
+    /**
+     * @param feature feature id
+     * @param context context to evaluate feature for, may be null
+     * @param users users to evaluate feature for
+     * @return a CompletableFuture containing a BitSet where bit i is set if feature is active for users.get(i)
+     * @see IzanamiClient#batchBooleanValues(String, String, String[])
+     */
+    public CompletableFuture<BitSet> batchBooleanValues(String feature, String context, List<String> users) {
+        return batchBooleanValues(feature, context, users.toArray(new String[0]));
+    }
+
+    /**
+     * Evaluate a string feature for many users at once.
+     * @param feature feature id
+     * @param context context to evaluate feature for, may be null
+     * @param users users to evaluate feature for
+     * @return a CompletableFuture containing an array where element i is feature value for users[i]
+     * @see IzanamiClient#batchBooleanValues(String, String, String[])
+     */
+    public CompletableFuture<String[]> batchStringValues(String feature, String context, String[] users) {
+        return batchEvaluation(feature, context)
+                .thenApply(evaluation -> Arrays.stream(evaluation.values(users))
+                        .map(value -> Objects.isNull(value) ? null : value.stringValue())
+                        .toArray(String[]::new));
+    }
+
+    /**
+     * Evaluate a number feature for many users at once.
+     * @param feature feature id
+     * @param context context to evaluate feature for, may be null
+     * @param users users to evaluate feature for
+     * @return a CompletableFuture containing an array where element i is feature value for users[i]
+     * @see IzanamiClient#batchBooleanValues(String, String, String[])
+     */
+    public CompletableFuture<BigDecimal[]> batchNumberValues(String feature, String context, String[] users) {
+        return batchEvaluation(feature, context)
+                .thenApply(evaluation -> Arrays.stream(evaluation.values(users))
+                        .map(value -> Objects.isNull(value) ? null : value.numberValue())
+                        .toArray(BigDecimal[]::new));
+    }
+
+    private CompletableFuture<BatchEvaluation> batchEvaluation(String feature, String context) {
+        return featureService.loadFeature(feature)
+                .thenApply(f -> BatchEvaluation.of(f, context, configuration.clock.millis()));
+    }
+
+    /**
+     * Indicate when client is loaded. A loaded client has fetch ids to preload (if provided), and opened its connection
+     * if pre-warming is enabled in transport configuration. Otherwise, client is ready immediately after its instantiation.
      * @return a CompletableFuture that resolve when client has loaded id to preload (if any).
      */
     public CompletableFuture<Void> isLoaded() {
@@ -185,6 +414,10 @@ public class IzanamiClient {
         private Optional<Duration> callTimeout = Optional.empty();
         private Set<String> idsToPreload = Collections.emptySet();
         private Optional<BooleanCastStrategy> castStrategy = Optional.empty();
+        private Optional<IzanamiClock> clock = Optional.empty();
+        private Optional<TransportConfiguration> transportConfiguration = Optional.empty();
+        private Optional<CircuitBreakerConfiguration> circuitBreakerConfiguration = Optional.empty();
+        private boolean shared = false;
 
         private IzanamiClientBuilder(IzanamiConnectionInformation connectionInformation) {
             this.connectionInformation = connectionInformation;
@@ -262,6 +495,52 @@ public class IzanamiClient {
             return this;
         }
 
+        /**
+         * Clock to use to evaluate time based activation conditions (periods, hours, days).
+         * {@link IzanamiClock#cachedClock(java.time.Duration)} can be used to avoid reading system time on each evaluation.
+         * @param clock clock to use, default is system clock
+         * @return updated builder
+         */
+        public IzanamiClientBuilder withClock(IzanamiClock clock) {
+            this.clock = Optional.ofNullable(clock);
+            return this;
+        }
+
+        /**
+         * Specify HTTP transport configuration (executor, HTTP version, connect timeout, thread pool size and
+         * connection pre-warming) used by default HTTP client and by SSE client.
+         * Only SSE client is affected if a custom HTTP client is provided with {@link IzanamiClientBuilder#withCustomClient(IzanamiHttpClient)}.
+         * @param transportConfiguration transport configuration
+         * @return updated builder
+         */
+        public IzanamiClientBuilder withTransportConfiguration(TransportConfiguration transportConfiguration) {
+            this.transportConfiguration = Optional.ofNullable(transportConfiguration);
+            return this;
+        }
+
+        /**
+         * Guard calls to remote Izanami (feature queries and cache refreshes, not SSE) with a circuit breaker.
+         * While breaker is open, queries don't wait for call timeout: last known values or error strategy are used right away.
+         * @param circuitBreakerConfiguration circuit breaker thresholds and timings
+         * @return updated builder
+         */
+        public IzanamiClientBuilder withCircuitBreaker(CircuitBreakerConfiguration circuitBreakerConfiguration) {
+            this.circuitBreakerConfiguration = Optional.ofNullable(circuitBreakerConfiguration);
+            return this;
+        }
+
+        /**
+         * Share feature cache, refresh threads, SSE connection and HTTP client with every other client of this JVM
+         * built with this option for the same Izanami url, client id and client secret, and the same cache, clock,
+         * transport and circuit breaker settings. Clients whose settings differ get their own connection. Error strategy,
+         * boolean cast strategy and call timeout remain specific to each client.
+         * @return updated builder
+         */
+        public IzanamiClientBuilder withSharedConnection() {
+            this.shared = true;
+            return this;
+        }
+
         /**
          * Build izanami client with this builder current information
          * @return a new izanami client
@@ -274,7 +553,11 @@ public class IzanamiClient {
                     client,
                     callTimeout,
                     idsToPreload,
-                    castStrategy
+                    castStrategy,
+                    clock,
+                    transportConfiguration,
+                    circuitBreakerConfiguration,
+                    shared
             );
         }
     }
@@ -0,0 +1,69 @@
+package fr.maif;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of current time used by the client to evaluate time based activation conditions.
+ */
+@FunctionalInterface
+public interface IzanamiClock {
+    /**
+     * @return current time, as milliseconds since epoch
+     */
+    long millis();
+
+    /**
+     * @return a clock that reads system time on each call
+     */
+    static IzanamiClock systemClock() {
+        return System::currentTimeMillis;
+    }
+
+    /**
+     * @param instant instant to return
+     * @return a clock that always returns given instant, mostly usefull for tests
+     */
+    static IzanamiClock fixedClock(Instant instant) {
+        long millis = instant.toEpochMilli();
+        return () -> millis;
+    }
+
+    /**
+     * Clock that reads system time at given interval and serves last read value in between.
+     * This avoids hitting system clock for every evaluation, at the cost of precision.
+     * @param tick interval between two system time reads
+     * @return a new cached clock, that should be closed when not needed anymore
+     */
+    static CachedClock cachedClock(Duration tick) {
+        return new CachedClock(tick);
+    }
+
+    class CachedClock implements IzanamiClock, AutoCloseable {
+        private final ScheduledExecutorService scheduler;
+        private volatile long now = System.currentTimeMillis();
+
+        private CachedClock(Duration tick) {
+            long tickMillis = Math.max(1L, tick.toMillis());
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "izanami-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(() -> now = System.currentTimeMillis(), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public long millis() {
+            return now;
+        }
+
+        @Override
+        public void close() {
+            scheduler.shutdown();
+        }
+    }
+}
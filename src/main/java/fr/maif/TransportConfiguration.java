@@ -0,0 +1,144 @@
+package fr.maif;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * This class allows to configure HTTP transport used by default izanami HTTP client and by SSE client.
+ */
+public class TransportConfiguration {
+    /**
+     * If present, executor used to run HTTP client tasks. It's not shut down when izanami client is closed.
+     */
+    public final Optional<Executor> executor;
+
+    /**
+     * If present, HTTP version to use. Otherwise, feature calls use JDK default (HTTP/2 with HTTP/1.1 fallback)
+     * and SSE uses HTTP/1.1, since JDK HTTP/2 implementation doesn't release long-lived streams properly.
+     */
+    public final Optional<HttpClient.Version> httpVersion;
+
+    /**
+     * Maximum time to establish a connection to remote Izanami.
+     */
+    public final Duration connectTimeout;
+
+    /**
+     * Number of threads used by HTTP client when no executor is provided, 0 means JDK default for feature calls
+     * and 2 threads for SSE.
+     */
+    public final int threadPoolSize;
+
+    /**
+     * Whether a connection to remote Izanami should be opened when client is built, to avoid paying connection
+     * (and TLS handshake) cost on first feature call.
+     */
+    public final boolean prewarm;
+
+    /**
+     * Whether gzip / deflate compressed responses should be requested from remote Izanami, for both feature
+     * calls and SSE. Compressed bodies are decompressed while being parsed.
+     */
+    public final boolean compression;
+
+    private TransportConfiguration(Builder builder) {
+        executor = builder.executor;
+        httpVersion = builder.httpVersion;
+        connectTimeout = builder.connectTimeout;
+        threadPoolSize = builder.threadPoolSize;
+        prewarm = builder.prewarm;
+        compression = builder.compression;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return default transport configuration
+     */
+    public static TransportConfiguration defaults() {
+        return newBuilder().build();
+    }
+
+    public static final class Builder {
+        private Optional<Executor> executor = Optional.empty();
+        private Optional<HttpClient.Version> httpVersion = Optional.empty();
+        private Duration connectTimeout = Duration.ofSeconds(10L);
+        private int threadPoolSize = 0;
+        private boolean prewarm = false;
+        private boolean compression = false;
+
+        private Builder() {
+        }
+
+        /**
+         * @param val executor used to run HTTP client tasks, it won't be shut down by izanami client.
+         *            Takes precedence over {@link Builder#withThreadPoolSize(int)}.
+         * @return updated builder
+         */
+        public Builder withExecutor(Executor val) {
+            executor = Optional.ofNullable(val);
+            return this;
+        }
+
+        /**
+         * @param val HTTP version to use for both feature calls and SSE
+         * @return updated builder
+         */
+        public Builder withHttpVersion(HttpClient.Version val) {
+            httpVersion = Optional.ofNullable(val);
+            return this;
+        }
+
+        /**
+         * @param val maximum time to establish a connection to remote Izanami, default is 10 seconds
+         * @return updated builder
+         */
+        public Builder withConnectTimeout(Duration val) {
+            if (val.isNegative() || val.isZero()) {
+                throw new IllegalArgumentException("Connect timeout must be positive");
+            }
+            connectTimeout = val;
+            return this;
+        }
+
+        /**
+         * @param val number of threads of the pool created for HTTP client when no executor is provided.
+         *            SSE client always uses at least 2 threads, since one of them is busy reading event stream.
+         * @return updated builder
+         */
+        public Builder withThreadPoolSize(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("Thread pool size must be positive");
+            }
+            threadPoolSize = val;
+            return this;
+        }
+
+        /**
+         * @param val whether a connection to remote Izanami should be opened when client is built, default is false
+         * @return updated builder
+         */
+        public Builder withPrewarm(boolean val) {
+            prewarm = val;
+            return this;
+        }
+
+        /**
+         * @param val whether gzip / deflate compressed responses should be requested from remote Izanami, default is
+         *            false. Compression reduces transferred bytes for large feature sets at the cost of some CPU.
+         * @return updated builder
+         */
+        public Builder withCompression(boolean val) {
+            compression = val;
+            return this;
+        }
+
+        public TransportConfiguration build() {
+            return new TransportConfiguration(this);
+        }
+    }
+}
@@ -1,33 +1,132 @@
 package fr.maif.features;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.Set;
 
 import fr.maif.features.values.FeatureValue;
 import fr.maif.features.values.StringValue;
 import fr.maif.features.values.NumberValue;
 
 public class ActivationCondition {
-    private FeaturePeriod period;
-    private ActivationRule rule;
+    private static final Interner<ActivationCondition> INTERNER = new Interner<>();
+    private final FeaturePeriod period;
+    private final ActivationRule rule;
 
     public ActivationCondition(FeaturePeriod period, ActivationRule rule) {
         this.period = period;
         this.rule = rule;
     }
 
+    /**
+     * Share given condition with every other feature using an identical one. Conditions based on a user percentage
+     * are never shared, since their rule caches hashing state of the last evaluated feature.
+     * @param condition condition to share
+     * @param <C> condition type
+     * @return canonical condition equal to given one
+     */
+    @SuppressWarnings("unchecked")
+    public static <C extends ActivationCondition> C shared(C condition) {
+        if (condition == null || condition.rule() instanceof UserPercentage) {
+            return condition;
+        }
+        return (C) INTERNER.intern(condition);
+    }
+
     public boolean active(String user, String featureId) {
-        return Optional.ofNullable(period).map(p -> p.active(user)).orElse(true) &&
-                Optional.ofNullable(rule).map(r -> r.active(user, featureId)).orElse(true);
+        return active(user, featureId, System.currentTimeMillis());
+    }
+
+    public boolean active(String user, String featureId, long now) {
+        return (period == null || period.active(user, now)) &&
+                (rule == null || rule.active(user, featureId));
+    }
+
+    FeaturePeriod period() {
+        return period;
+    }
+
+    ActivationRule rule() {
+        return rule;
+    }
+
+    /**
+     * @return whether this condition activation depends on evaluation instant
+     */
+    public boolean isTimeDependent() {
+        return period != null;
+    }
+
+    /**
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return first instant after now at which this condition activation may change, Long.MAX_VALUE if it never does
+     */
+    public long nextTransition(long now) {
+        return period == null ? Long.MAX_VALUE : period.nextTransition(now);
+    }
+
+    /**
+     * @return rough estimation of this condition heap size, in bytes
+     */
+    public long estimatedSize() {
+        return estimatedSize(Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * @param seen instances already counted, which are not counted again
+     * @return rough estimation of this condition heap size not already counted, in bytes
+     */
+    long estimatedSize(Set<Object> seen) {
+        if (!seen.add(this)) {
+            return 0L;
+        }
+        long size = 32L;
+        if (period != null && seen.add(period)) {
+            size += 128L + 64L * period.hourPeriods.size();
+        }
+        if (rule instanceof UserList) {
+            var users = ((UserList) rule).users;
+            if (seen.add(users)) {
+                size += users instanceof CompactUserSet ? ((CompactUserSet) users).estimatedSize() : 64L * users.size();
+            }
+        } else if (rule != null && seen.add(rule)) {
+            size += 32L;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ActivationCondition that = (ActivationCondition) o;
+        return Objects.equals(period, that.period) && Objects.equals(rule, that.rule);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(period, rule);
     }
 
     public static abstract class ValuedActivationCondition<T extends FeatureValue> extends ActivationCondition {
-        public T value;
+        public final T value;
 
         public ValuedActivationCondition(FeaturePeriod period, ActivationRule rule, T value) {
             super(period, rule);
             this.value = value;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return super.equals(o) && Objects.equals(value, ((ValuedActivationCondition<?>) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + Objects.hashCode(value);
+        }
     }
 
     public static class StringValuedActivationCondition extends ValuedActivationCondition<StringValue> {
@@ -1,14 +1,31 @@
 package fr.maif.features;
 
 import java.time.DayOfWeek;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Objects;
 import java.util.Set;
 
 public class ActivationDayOfWeeks {
     public Set<DayOfWeek> days;
 
     public boolean active(ZoneId timezone) {
-        return days.contains(LocalDateTime.now().atZone(timezone).getDayOfWeek());
+        return active(LocalDate.now(timezone).getDayOfWeek());
+    }
+
+    public boolean active(DayOfWeek day) {
+        return days.contains(day);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Objects.equals(days, ((ActivationDayOfWeeks) o).days);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(days);
     }
 }
@@ -0,0 +1,176 @@
+package fr.maif.features;
+
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.FeatureOverload.ValuedOverload;
+import fr.maif.features.values.BooleanCastStrategy;
+import fr.maif.features.values.FeatureValue;
+
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluation of a single feature for many users. Overload is resolved once for the whole batch,
+ * users are then evaluated in a tight loop, split across a fork join pool for large batches.
+ */
+public final class BatchEvaluation {
+    /**
+     * Number of users evaluated by a single task, must be a multiple of 64 so that tasks don't share BitSet words.
+     */
+    static final int CHUNK_SIZE = 64 * 256;
+
+    private final Feature<?> feature;
+    private final FeatureOverload<?> overload;
+    private final long now;
+
+    private BatchEvaluation(Feature<?> feature, String context, long now) {
+        this.feature = feature;
+        this.overload = feature.overload(context);
+        this.now = now;
+        if (overload == null) {
+            throw new IzanamiException("No overload of feature " + feature.id + " matches context " + context);
+        }
+        if (overload.featureType == Feature.FeatureType.SCRIPT) {
+            throw new IzanamiException("Script feature " + feature.id + " can't be evaluated locally");
+        }
+    }
+
+    /**
+     * Prepare batch evaluation of given feature
+     * @param feature feature to evaluate
+     * @param context context to evaluate feature for
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return a batch evaluation
+     * @throws IzanamiException if feature can't be evaluated locally for given context
+     */
+    public static BatchEvaluation of(Feature<?> feature, String context, long now) {
+        return new BatchEvaluation(feature, context, now);
+    }
+
+    /**
+     * Evaluate feature as a boolean for each user
+     * @param users users to evaluate feature for
+     * @param castStrategy strategy to use to cast non-boolean values
+     * @return a BitSet where bit i is set if feature is active for users[i]
+     */
+    public BitSet booleanValues(String[] users, BooleanCastStrategy castStrategy) {
+        long[] words = new long[(users.length + 63) >>> 6];
+        if (users.length <= CHUNK_SIZE) {
+            evaluateBooleans(users, castStrategy, words, 0, users.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new BooleanTask(users, castStrategy, words, 0, users.length));
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Evaluate feature value for each user
+     * @param users users to evaluate feature for
+     * @return an array where element i is the feature value for users[i], elements are null for disabled valued features
+     */
+    public FeatureValue[] values(String[] users) {
+        FeatureValue[] values = new FeatureValue[users.length];
+        if (users.length <= CHUNK_SIZE) {
+            evaluateValues(users, values, 0, users.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ValueTask(users, values, 0, users.length));
+        }
+        return values;
+    }
+
+    private void evaluateBooleans(String[] users, BooleanCastStrategy castStrategy, long[] words, int from, int to) {
+        String name = feature.name;
+        if (overload instanceof ClassicalOverload) {
+            for (int i = from; i < to; i++) {
+                if (overload.evaluateBoolean(users[i], name, now)) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        } else if (overload instanceof ValuedOverload) {
+            ValuedOverload<?> valued = (ValuedOverload<?>) overload;
+            for (int i = from; i < to; i++) {
+                FeatureValue value = valued.activeValue(users[i], name, now);
+                if (value != null && Boolean.TRUE.equals(value.booleanValue(castStrategy))) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                Optional<? extends FeatureValue> value = overload.value(users[i], name, now);
+                if (value != null && value.isPresent() && Boolean.TRUE.equals(value.get().booleanValue(castStrategy))) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+    }
+
+    private void evaluateValues(String[] users, FeatureValue[] values, int from, int to) {
+        String name = feature.name;
+        for (int i = from; i < to; i++) {
+            Optional<? extends FeatureValue> value = overload.value(users[i], name, now);
+            values[i] = value == null ? null : value.orElse(null);
+        }
+    }
+
+    /**
+     * Split point of a range, rounded to a chunk boundary so that tasks never write to the same BitSet word
+     */
+    private static int middle(int from, int to) {
+        return from + ((to - from) / 2 + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+    }
+
+    private final class BooleanTask extends RecursiveAction {
+        private final String[] users;
+        private final BooleanCastStrategy castStrategy;
+        private final long[] words;
+        private final int from;
+        private final int to;
+
+        private BooleanTask(String[] users, BooleanCastStrategy castStrategy, long[] words, int from, int to) {
+            this.users = users;
+            this.castStrategy = castStrategy;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                evaluateBooleans(users, castStrategy, words, from, to);
+            } else {
+                int middle = middle(from, to);
+                invokeAll(
+                        new BooleanTask(users, castStrategy, words, from, middle),
+                        new BooleanTask(users, castStrategy, words, middle, to)
+                );
+            }
+        }
+    }
+
+    private final class ValueTask extends RecursiveAction {
+        private final String[] users;
+        private final FeatureValue[] values;
+        private final int from;
+        private final int to;
+
+        private ValueTask(String[] users, FeatureValue[] values, int from, int to) {
+            this.users = users;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                evaluateValues(users, values, from, to);
+            } else {
+                int middle = middle(from, to);
+                invokeAll(new ValueTask(users, values, from, middle), new ValueTask(users, values, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package fr.maif.features;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Immutable set of users, stored as sorted UTF-8 byte sequences in a single array with an open addressing hash index.
+ * This takes a fraction of the memory of a HashSet for large user lists, while membership check stays a hash lookup
+ * that does not allocate.
+ */
+public final class CompactUserSet extends AbstractSet<String> {
+    private static final int SEED = 0;
+    private static final Interner<CompactUserSet> INTERNER = new Interner<>();
+
+    private final byte[] data;
+    private final int[] offsets;
+    private final int[] hashes;
+    private final int[] index;
+    private final int mask;
+    private final int hashCode;
+
+    private CompactUserSet(byte[][] users) {
+        int size = users.length;
+        int length = 0;
+        for (byte[] user : users) {
+            length += user.length;
+        }
+        this.data = new byte[length];
+        this.offsets = new int[size + 1];
+        this.hashes = new int[size];
+        int capacity = Integer.highestOneBit(Math.max(1, size * 2 - 1)) << 1;
+        this.index = new int[capacity];
+        this.mask = capacity - 1;
+
+        int position = 0;
+        int setHashCode = 0;
+        for (int i = 0; i < size; i++) {
+            byte[] user = users[i];
+            System.arraycopy(user, 0, data, position, user.length);
+            offsets[i] = position;
+            position += user.length;
+            String value = new String(user, StandardCharsets.UTF_8);
+            setHashCode += value.hashCode();
+            int hash = Murmur3.hash32x86(value, SEED);
+            hashes[i] = hash;
+            int slot = hash & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = i + 1;
+        }
+        offsets[size] = position;
+        this.hashCode = setHashCode;
+    }
+
+    /**
+     * @param users users to store
+     * @return a compact set containing given users
+     */
+    public static CompactUserSet copyOf(Collection<String> users) {
+        if (users instanceof CompactUserSet) {
+            return (CompactUserSet) users;
+        }
+        byte[][] encoded = users.stream()
+                .filter(Objects::nonNull)
+                .map(user -> user.getBytes(StandardCharsets.UTF_8))
+                .sorted(Arrays::compareUnsigned)
+                .toArray(byte[][]::new);
+        // Strings with unpaired surrogates may share an encoding, duplicates are removed on bytes
+        int size = 0;
+        for (byte[] user : encoded) {
+            if (size == 0 || !Arrays.equals(encoded[size - 1], user)) {
+                encoded[size++] = user;
+            }
+        }
+        return new CompactUserSet(size == encoded.length ? encoded : Arrays.copyOf(encoded, size));
+    }
+
+    /**
+     * Build a compact set, shared with every other list containing the same users.
+     * @param users users to store
+     * @return canonical compact set containing given users
+     */
+    public static CompactUserSet shared(Collection<String> users) {
+        return INTERNER.intern(copyOf(users));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String user = (String) o;
+        int hash = Murmur3.hash32x86(user, SEED);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = index[slot]) != 0) {
+            int i = entry - 1;
+            if (hashes[i] == hash && Utf8.equals(user, data, offsets[i], offsets[i + 1])) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < hashes.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int i = next++;
+                return new String(data, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return hashes.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof CompactUserSet) {
+            var other = (CompactUserSet) o;
+            return hashCode == other.hashCode && Arrays.equals(offsets, other.offsets) && Arrays.equals(data, other.data);
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * @return approximative heap size of this set in bytes
+     */
+    public long estimatedSize() {
+        return 16L * 4 + data.length + 4L * (offsets.length + hashes.length + index.length);
+    }
+}
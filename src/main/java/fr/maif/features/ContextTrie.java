@@ -0,0 +1,123 @@
+package fr.maif.features;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of feature overloads by context path, used to find the most specific overload for a given context.
+ * Contexts are split on "/" and matched segment by segment, therefore overload "a/b" applies to contexts "a/b" and
+ * "a/b/c" but not to "a/bc". Empty segments are ignored, "" being the root context.
+ * Resolution costs O(depth) and does not allocate.
+ */
+final class ContextTrie<T> {
+    private final Node<T> root;
+
+    ContextTrie(Map<String, T> valuesByContext) {
+        var builder = new NodeBuilder<T>();
+        valuesByContext.forEach((context, value) -> {
+            var current = builder;
+            int start = 0;
+            int length = context.length();
+            while (start <= length) {
+                int end = context.indexOf('/', start);
+                if (end < 0) {
+                    end = length;
+                }
+                if (end > start) {
+                    current = current.children.computeIfAbsent(context.substring(start, end), k -> new NodeBuilder<>());
+                }
+                start = end + 1;
+            }
+            current.value = value;
+        });
+        this.root = builder.build();
+    }
+
+    /**
+     * Find value associated with the most specific context matching given context.
+     * @param context context to match, null is considered as root context
+     * @return value of the deepest matching context, or null if no context (not even root) has a value
+     */
+    T resolve(String context) {
+        Node<T> current = root;
+        T result = root.value;
+        if (context == null) {
+            return result;
+        }
+        int start = 0;
+        int length = context.length();
+        while (start <= length) {
+            int end = context.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                current = current.child(context, start, end);
+                if (current == null) {
+                    return result;
+                }
+                if (current.value != null) {
+                    result = current.value;
+                }
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final String[] segments;
+        private final Node<T>[] children;
+        private final int mask;
+
+        @SuppressWarnings("unchecked")
+        private Node(T value, Map<String, Node<T>> childrenBySegment) {
+            this.value = value;
+            int capacity = Integer.highestOneBit(Math.max(1, childrenBySegment.size() * 2 - 1)) << 1;
+            this.segments = new String[capacity];
+            this.children = new Node[capacity];
+            this.mask = capacity - 1;
+            childrenBySegment.forEach((segment, child) -> {
+                int index = spread(segment.hashCode()) & mask;
+                while (segments[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                segments[index] = segment;
+                children[index] = child;
+            });
+        }
+
+        private Node<T> child(String context, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + context.charAt(i);
+            }
+            int length = end - start;
+            int index = spread(hash) & mask;
+            String segment;
+            while ((segment = segments[index]) != null) {
+                if (segment.length() == length && context.regionMatches(start, segment, 0, length)) {
+                    return children[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private static final class NodeBuilder<T> {
+        private T value;
+        private final Map<String, NodeBuilder<T>> children = new HashMap<>();
+
+        private Node<T> build() {
+            Map<String, Node<T>> built = new HashMap<>();
+            children.forEach((segment, child) -> built.put(segment, child.build()));
+            return new Node<>(value, built);
+        }
+    }
+}
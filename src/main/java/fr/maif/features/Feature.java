@@ -3,6 +3,7 @@ package fr.maif.features;
 import java.util.*;
 import java.math.BigDecimal;
 
+import fr.maif.errors.IzanamiException;
 import fr.maif.features.values.FeatureValue;
 import fr.maif.features.values.NumberValue;
 import fr.maif.features.values.StringValue;
@@ -14,7 +15,9 @@ public abstract class Feature<T extends FeatureValue> {
     public final String project;
     public final T active;
 
-    public Map<String, FeatureOverload<T>> conditions = new HashMap<>();
+    public final Map<String, FeatureOverload<T>> conditions;
+    private final ContextTrie<FeatureOverload<T>> overloadsByContext;
+    private final boolean timeDependent;
 
     public Feature(String id, String name, String project, T active,
                 Map<String, FeatureOverload<T>> conditions) {
@@ -23,18 +26,108 @@ public abstract class Feature<T extends FeatureValue> {
             this.project = project;
             this.active = active;
             this.conditions = conditions;
+            this.overloadsByContext = new ContextTrie<>(conditions);
+            this.timeDependent = conditions.values().stream().anyMatch(FeatureOverload::isTimeDependent);
         }
 
+    /**
+     * @return whether feature value depends on evaluation instant, in which case it can't be memoized
+     */
+    public boolean isTimeDependent() {
+        return timeDependent;
+    }
+
+    /**
+     * Rough estimation of this feature heap size, user lists shared with other features are counted for each of them.
+     * @return estimated size, in bytes
+     */
+    public long estimatedSize() {
+        return estimatedSize(Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * @param seen instances already counted, such as interned strings, conditions or overloads, which are not counted again
+     * @return rough estimation of this feature heap size not already counted, in bytes
+     */
+    long estimatedSize(Set<Object> seen) {
+        long size = 64L + 2L * (length(id, seen) + length(name, seen) + length(project, seen));
+        for (Map.Entry<String, FeatureOverload<T>> entry : conditions.entrySet()) {
+            size += 64L + 2L * length(entry.getKey(), seen) + entry.getValue().estimatedSize(seen);
+        }
+        return size;
+    }
+
+    private static int length(String value, Set<Object> seen) {
+        return value == null || !seen.add(value) ? 0 : value.length();
+    }
+
+    /**
+     * Compute next instant at which feature value may change for given context, values computed at now
+     * can be reused until then.
+     * @param context context to evaluate feature for
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return first instant after now at which feature value may change, Long.MAX_VALUE if it never does
+     */
+    public long nextTransition(String context, long now) {
+        if (!timeDependent) {
+            return Long.MAX_VALUE;
+        }
+        FeatureOverload<T> overload = overload(context);
+        return overload == null ? Long.MAX_VALUE : overload.nextTransition(now);
+    }
+
+    /**
+     * Find overload to use for given context, which is the overload of the most specific context matching it.
+     * @param context context to match, "a/b" overload applies to "a/b" and "a/b/c" contexts but not to "a/bc"
+     * @return overload to use, or null if no overload matches given context
+     */
+    public FeatureOverload<T> overload(String context) {
+        return overloadsByContext.resolve(context);
+    }
 
     public Optional<T> value(String context, String user) {
-        String ctx = Optional.ofNullable(context).orElse("");
-        String contextToUse = conditions.keySet().stream()
-                .filter(ctx::startsWith)
-                .max(Comparator.comparingInt(String::length))
-                .get();
-
-        FeatureOverload<T> overload = conditions.get(contextToUse);
-        return overload.value(user, name);
+        return value(context, user, System.currentTimeMillis());
+    }
+
+    /**
+     * @param context context to evaluate feature for
+     * @param user user to evaluate feature for
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return feature value, empty if it can't be computed locally
+     */
+    public Optional<T> value(String context, String user, long now) {
+        FeatureOverload<T> overload = overload(context);
+        if (overload == null) {
+            return Optional.empty();
+        }
+        return overload.value(user, name, now);
+    }
+
+    /**
+     * Evaluate this feature as a boolean without allocating, non-boolean values are cast using LAX strategy.
+     * @param context context to evaluate feature for
+     * @param user user to evaluate feature for
+     * @return feature activation status
+     * @throws IzanamiException if no overload matches given context or if feature can't be evaluated locally (script features)
+     */
+    public boolean evaluateBoolean(String context, String user) {
+        return evaluateBoolean(context, user, System.currentTimeMillis());
+    }
+
+    /**
+     * Evaluate this feature as a boolean at given instant without allocating, non-boolean values are cast using LAX strategy.
+     * @param context context to evaluate feature for
+     * @param user user to evaluate feature for
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return feature activation status
+     * @throws IzanamiException if no overload matches given context or if feature can't be evaluated locally (script features)
+     */
+    public boolean evaluateBoolean(String context, String user, long now) {
+        FeatureOverload<T> overload = overload(context);
+        if (overload == null) {
+            throw new IzanamiException("No overload of feature " + id + " matches context " + context);
+        }
+        return overload.evaluateBoolean(user, name, now);
     }
 
 
@@ -0,0 +1,54 @@
+package fr.maif.features;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Estimated heap footprint of a set of features. Strings, user lists, periods, conditions and overloads shared
+ * between features are counted once, which gives the memory saved by sharing them compared to features
+ * counted one by one.
+ */
+public final class FeatureFootprint {
+    /**
+     * Estimated size of features, with shared instances counted once, in bytes
+     */
+    public final long estimatedSize;
+    /**
+     * Estimated size of features if each of them was counted on its own, in bytes
+     */
+    public final long unsharedSize;
+
+    private FeatureFootprint(long estimatedSize, long unsharedSize) {
+        this.estimatedSize = estimatedSize;
+        this.unsharedSize = unsharedSize;
+    }
+
+    /**
+     * @param features features to measure
+     * @return estimated footprint of given features
+     */
+    public static FeatureFootprint of(Collection<? extends Feature<?>> features) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long estimatedSize = 0L;
+        long unsharedSize = 0L;
+        for (Feature<?> feature : features) {
+            estimatedSize += feature.estimatedSize(seen);
+            unsharedSize += feature.estimatedSize();
+        }
+        return new FeatureFootprint(estimatedSize, unsharedSize);
+    }
+
+    /**
+     * @return estimated memory saved by sharing instances between features, in bytes
+     */
+    public long savedSize() {
+        return unsharedSize - estimatedSize;
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureFootprint{estimatedSize=" + estimatedSize + ", unsharedSize=" + unsharedSize + '}';
+    }
+}
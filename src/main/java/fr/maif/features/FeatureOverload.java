@@ -1,21 +1,124 @@
 package fr.maif.features;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.List;
+import java.util.Set;
 
+import fr.maif.errors.IzanamiException;
 import fr.maif.features.ActivationCondition.NumberValuedActivationCondition;
 import fr.maif.features.ActivationCondition.StringValuedActivationCondition;
 import fr.maif.features.ActivationCondition.ValuedActivationCondition;
+import fr.maif.features.values.BooleanCastStrategy;
 import fr.maif.features.values.BooleanValue;
 import fr.maif.features.values.FeatureValue;
 import fr.maif.features.values.NumberValue;
 import fr.maif.features.values.StringValue;
 import java.math.BigDecimal;
 public abstract class FeatureOverload<T extends FeatureValue> {
+    private static final Interner<FeatureOverload<?>> INTERNER = new Interner<>();
     public final boolean enabled;
     public final Feature.FeatureType featureType;
 
-    public abstract Optional<T> value(String user, String name);
+    /**
+     * Share given overload with every other feature using an identical one. Overloads are immutable, which makes
+     * sharing safe.
+     * @param overload overload to share
+     * @param <O> overload type
+     * @return canonical overload equal to given one
+     */
+    @SuppressWarnings("unchecked")
+    public static <O extends FeatureOverload<?>> O shared(O overload) {
+        return (O) INTERNER.intern(overload);
+    }
+
+    public Optional<T> value(String user, String name) {
+        return value(user, name, System.currentTimeMillis());
+    }
+
+    /**
+     * @param user user to evaluate overload for
+     * @param name feature name
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return overload value, empty if it can't be computed locally (script overloads)
+     */
+    public abstract Optional<T> value(String user, String name, long now);
+
+    /**
+     * Evaluate this overload as a boolean. Non-boolean values are cast using LAX strategy.
+     * @param user user to evaluate overload for
+     * @param name feature name
+     * @return overload activation status
+     * @throws IzanamiException if overload can't be evaluated locally (script overloads)
+     */
+    public boolean evaluateBoolean(String user, String name) {
+        return evaluateBoolean(user, name, System.currentTimeMillis());
+    }
+
+    /**
+     * Evaluate this overload as a boolean at given instant. Non-boolean values are cast using LAX strategy.
+     * @param user user to evaluate overload for
+     * @param name feature name
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return overload activation status
+     * @throws IzanamiException if overload can't be evaluated locally (script overloads)
+     */
+    public boolean evaluateBoolean(String user, String name, long now) {
+        Optional<T> value = value(user, name, now);
+        if (value == null) {
+            return false;
+        }
+        return value.orElseThrow(() -> new IzanamiException("Script feature " + name + " can't be evaluated locally"))
+                .booleanValue(BooleanCastStrategy.LAX);
+    }
+
+    /**
+     * @return whether this overload value depends on evaluation instant
+     */
+    public boolean isTimeDependent() {
+        return false;
+    }
+
+    /**
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return first instant after now at which this overload value may change, Long.MAX_VALUE if it never does
+     */
+    public long nextTransition(long now) {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return rough estimation of this overload heap size, in bytes
+     */
+    public long estimatedSize() {
+        return estimatedSize(Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * @param seen instances already counted, which are not counted again
+     * @return rough estimation of this overload heap size not already counted, in bytes
+     */
+    long estimatedSize(Set<Object> seen) {
+        return seen.add(this) ? 32L : 0L;
+    }
+
+    static long estimatedSize(List<? extends ActivationCondition> conditions, Set<Object> seen) {
+        long size = 32L;
+        for (int i = 0; i < conditions.size(); i++) {
+            size += conditions.get(i).estimatedSize(seen);
+        }
+        return size;
+    }
+
+    static long nextTransition(List<? extends ActivationCondition> conditions, long now) {
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < conditions.size(); i++) {
+            next = Math.min(next, conditions.get(i).nextTransition(now));
+        }
+        return next;
+    }
 
     public FeatureOverload(Feature.FeatureType featureType, boolean enabled) {
         this.featureType = featureType;
@@ -23,53 +126,148 @@ public abstract class FeatureOverload<T extends FeatureValue> {
     }
 
     public static class ClassicalOverload extends FeatureOverload<BooleanValue> {
-        public List<ActivationCondition> conditions;
+        private static final Optional<BooleanValue> ACTIVE = Optional.of(BooleanValue.TRUE);
+        private static final Optional<BooleanValue> INACTIVE = Optional.of(BooleanValue.FALSE);
+        public final List<ActivationCondition> conditions;
 
+        /**
+         * @param enabled whether overload is enabled
+         * @param conditions activation conditions, copied to an unmodifiable list since overloads may be shared
+         */
         public ClassicalOverload(boolean enabled, List<ActivationCondition> conditions) {
             super(Feature.FeatureType.CLASSICAL, enabled);
-            this.conditions = conditions;
+            this.conditions = List.copyOf(conditions);
+        }
+
+        @Override
+        public Optional<BooleanValue> value(String user, String name, long now) {
+            return evaluateBoolean(user, name, now) ? ACTIVE : INACTIVE;
         }
 
         @Override
-        public Optional<BooleanValue> value(String user, String name) {
+        public boolean evaluateBoolean(String user, String name, long now) {
             if(!enabled) {
-                return Optional.of(new BooleanValue(false));
+                return false;
             }
-            if(conditions.isEmpty()) {
-                return Optional.of( new BooleanValue(true));
+            int size = conditions.size();
+            if(size == 0) {
+                return true;
             }
-            return Optional.of( new BooleanValue(conditions.stream().anyMatch(cond -> cond.active(user, name))));
+            for (int i = 0; i < size; i++) {
+                if (conditions.get(i).active(user, name, now)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isTimeDependent() {
+            return enabled && conditions.stream().anyMatch(ActivationCondition::isTimeDependent);
+        }
+
+        @Override
+        public long nextTransition(long now) {
+            return enabled ? nextTransition(conditions, now) : Long.MAX_VALUE;
+        }
+
+        @Override
+        long estimatedSize(Set<Object> seen) {
+            return seen.add(this) ? estimatedSize(conditions, seen) : 0L;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ClassicalOverload that = (ClassicalOverload) o;
+            return enabled == that.enabled && Objects.equals(conditions, that.conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, conditions);
         }
     }
 
     public static abstract class ValuedOverload<T extends FeatureValue> extends FeatureOverload<T> {
-        public List<? extends ValuedActivationCondition<T>> conditions;
-        public T value;
+        public final List<? extends ValuedActivationCondition<T>> conditions;
+        public final T value;
+
+        /**
+         * @param enabled whether overload is enabled
+         * @param conditions activation conditions, copied to an unmodifiable list since overloads may be shared
+         * @param value overload value when no condition is active
+         */
         public ValuedOverload(boolean enabled, List<? extends ValuedActivationCondition<T>> conditions, T value) {
             super(Feature.FeatureType.CLASSICAL, enabled);
-            this.conditions = conditions;
+            this.conditions = List.copyOf(conditions);
             this.value = value;
-        }   
-        
-        
+        }
+
         @Override
-        public Optional<T> value(String user, String name) {
-            if (!enabled) {
+        public Optional<T> value(String user, String name, long now) {
+            T result = activeValue(user, name, now);
+            if (result == null) {
                 return null;
             }
-            T result = conditions.stream().filter(cond -> cond.active(user, name))
-                    .map(cond -> cond.value)
-                    .findFirst()
-                    .orElse(value);
 
-            if (result == null) {
+            return Optional.of(result);
+        }
+
+        /**
+         * Same as {@link ValuedOverload#value(String, String, long)}, without wrapping result in an Optional.
+         * @param user user to evaluate overload for
+         * @param name feature name
+         * @param now evaluation instant, as milliseconds since epoch
+         * @return value of first active condition, overload value if none is active, null if overload is disabled
+         */
+        public T activeValue(String user, String name, long now) {
+            if (!enabled) {
                 return null;
             }
+            for (int i = 0; i < conditions.size(); i++) {
+                var cond = conditions.get(i);
+                if (cond.active(user, name, now)) {
+                    return cond.value;
+                }
+            }
+            return value;
+        }
 
-            return Optional.of(result);
+        @Override
+        public boolean evaluateBoolean(String user, String name, long now) {
+            T result = activeValue(user, name, now);
+            return result != null && result.booleanValue(BooleanCastStrategy.LAX);
+        }
+
+        @Override
+        public boolean isTimeDependent() {
+            return enabled && conditions.stream().anyMatch(ActivationCondition::isTimeDependent);
+        }
+
+        @Override
+        public long nextTransition(long now) {
+            return enabled ? nextTransition(conditions, now) : Long.MAX_VALUE;
         }
 
-      
+        @Override
+        long estimatedSize(Set<Object> seen) {
+            return seen.add(this) ? estimatedSize(conditions, seen) : 0L;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ValuedOverload<?> that = (ValuedOverload<?>) o;
+            return enabled == that.enabled && Objects.equals(conditions, that.conditions) && Objects.equals(value, that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, conditions, value);
+        }
     }
 
     public static class StringOverload extends ValuedOverload<StringValue> {
@@ -97,7 +295,7 @@ public abstract class FeatureOverload<T extends FeatureValue> {
     }
 
     public static class WasmFeatureOverload<T extends FeatureValue> extends FeatureOverload<T> {
-        public WasmConfig wasmConfig;
+        public final WasmConfig wasmConfig;
 
         public WasmFeatureOverload(boolean enabled, WasmConfig wasmConfig) {
             super(Feature.FeatureType.SCRIPT, enabled);
@@ -105,9 +303,22 @@ public abstract class FeatureOverload<T extends FeatureValue> {
         }
 
         @Override
-        public Optional<T> value(String user, String name) {
+        public Optional<T> value(String user, String name, long now) {
             return Optional.empty();
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            WasmFeatureOverload<?> that = (WasmFeatureOverload<?>) o;
+            return enabled == that.enabled && Objects.equals(wasmConfig, that.wasmConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, wasmConfig);
+        }
     }
 
     public static class WasmConfig {
@@ -116,5 +327,17 @@ public abstract class FeatureOverload<T extends FeatureValue> {
         public WasmConfig(String name) {
             this.name = name;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Objects.equals(name, ((WasmConfig) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name);
+        }
     }
 }
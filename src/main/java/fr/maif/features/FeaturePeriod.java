@@ -1,24 +1,147 @@
 package fr.maif.features;
 
+import java.time.DayOfWeek;
 import java.time.Instant;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Collections;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
 public class FeaturePeriod {
+    private static final Interner<FeaturePeriod> INTERNER = new Interner<>();
+
     public Optional<Instant> begin  = Optional.empty();
     public Optional<Instant> end  = Optional.empty();
     public Set<HourPeriod> hourPeriods  = Collections.emptySet();
     public Optional<ActivationDayOfWeeks> activationDays  = Optional.empty();
     public ZoneId timezone  = ZoneId.systemDefault();
 
+    /**
+     * Period bounds for the day currently being evaluated, recomputed when evaluation instant leaves this day.
+     */
+    private volatile DayWindow dayWindow;
+
+    /**
+     * Share given period with every other feature using an identical one. Shared periods must not be modified.
+     * @param period period to share
+     * @return canonical period equal to given one
+     */
+    public static FeaturePeriod shared(FeaturePeriod period) {
+        return INTERNER.intern(period);
+    }
+
     public boolean active(String user) {
-        var now = LocalDateTime.now().atZone(timezone).toInstant();
-        return begin.map(i -> i.isBefore(now)).orElse(true) &&
-            end.map(i -> i.isAfter(now)).orElse(true) &&
-            (hourPeriods.isEmpty() || hourPeriods.stream().anyMatch(p -> p.active(timezone))) &&
-            activationDays.stream().allMatch(d -> d.active(timezone));
+        return active(user, System.currentTimeMillis());
+    }
+
+    /**
+     * @param user user to evaluate period for
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return whether given instant is in this period
+     */
+    public boolean active(String user, long now) {
+        DayWindow window = dayWindow;
+        if (window == null || now < window.dayStart || now >= window.dayEnd) {
+            window = new DayWindow(this, now);
+            dayWindow = window;
+        }
+        return window.active(now);
+    }
+
+    /**
+     * Compute next instant at which this period activation may change.
+     * @param now evaluation instant, as milliseconds since epoch
+     * @return first instant after now at which {@link FeaturePeriod#active(String, long)} may return a different value,
+     * Long.MAX_VALUE if activation never changes after now
+     */
+    public long nextTransition(long now) {
+        DayWindow window = dayWindow;
+        if (window == null || now < window.dayStart || now >= window.dayEnd) {
+            window = new DayWindow(this, now);
+            dayWindow = window;
+        }
+        return window.nextTransition(now, !hourPeriods.isEmpty() || activationDays.isPresent());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FeaturePeriod that = (FeaturePeriod) o;
+        return Objects.equals(begin, that.begin)
+                && Objects.equals(end, that.end)
+                && Objects.equals(hourPeriods, that.hourPeriods)
+                && Objects.equals(activationDays, that.activationDays)
+                && Objects.equals(timezone, that.timezone);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(begin, end, hourPeriods, activationDays, timezone);
+    }
+
+    private static final class DayWindow {
+        private final long dayStart;
+        private final long dayEnd;
+        private final long begin;
+        private final long end;
+        private final boolean activeDay;
+        private final long[] hourStarts;
+        private final long[] hourEnds;
+
+        private DayWindow(FeaturePeriod period, long now) {
+            ZoneId timezone = period.timezone;
+            LocalDate day = Instant.ofEpochMilli(now).atZone(timezone).toLocalDate();
+            this.dayStart = day.atStartOfDay(timezone).toInstant().toEpochMilli();
+            this.dayEnd = day.plusDays(1).atStartOfDay(timezone).toInstant().toEpochMilli();
+            this.begin = period.begin.map(Instant::toEpochMilli).orElse(Long.MIN_VALUE);
+            this.end = period.end.map(Instant::toEpochMilli).orElse(Long.MAX_VALUE);
+            DayOfWeek dayOfWeek = day.getDayOfWeek();
+            this.activeDay = period.activationDays.map(d -> d.active(dayOfWeek)).orElse(true);
+            int size = period.hourPeriods.size();
+            this.hourStarts = new long[size];
+            this.hourEnds = new long[size];
+            int i = 0;
+            for (HourPeriod hourPeriod : period.hourPeriods) {
+                hourStarts[i] = hourPeriod.start(day, timezone);
+                hourEnds[i] = hourPeriod.end(day, timezone);
+                i++;
+            }
+        }
+
+        private boolean active(long now) {
+            if (now <= begin || now >= end || !activeDay) {
+                return false;
+            }
+            if (hourStarts.length == 0) {
+                return true;
+            }
+            for (int i = 0; i < hourStarts.length; i++) {
+                if (hourStarts[i] < now && hourEnds[i] > now) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Bounds are exclusive, period becomes active one millisecond after begin / hour start and inactive at end / hour end
+         */
+        private long nextTransition(long now, boolean dayDependent) {
+            long next = dayDependent ? dayEnd : Long.MAX_VALUE;
+            next = earliestAfter(now, begin == Long.MIN_VALUE ? Long.MAX_VALUE : begin + 1, next);
+            next = earliestAfter(now, end, next);
+            for (int i = 0; i < hourStarts.length; i++) {
+                next = earliestAfter(now, hourStarts[i] + 1, next);
+                next = earliestAfter(now, hourEnds[i], next);
+            }
+            return next;
+        }
+
+        private static long earliestAfter(long now, long candidate, long current) {
+            return candidate > now && candidate < current ? candidate : current;
+        }
     }
 }
@@ -0,0 +1,454 @@
+package fr.maif.features;
+
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.ActivationCondition.NumberValuedActivationCondition;
+import fr.maif.features.ActivationCondition.StringValuedActivationCondition;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.FeatureOverload.NumberOverload;
+import fr.maif.features.FeatureOverload.StringOverload;
+import fr.maif.features.FeatureOverload.WasmConfig;
+import fr.maif.features.FeatureOverload.WasmFeatureOverload;
+import fr.maif.features.values.BooleanValue;
+import fr.maif.features.values.FeatureValue;
+import fr.maif.features.values.NumberValue;
+import fr.maif.features.values.StringValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of parsed features, used to start with a populated cache before remote Izanami is reachable.
+ * File is made of a header (magic number, format version, feature count), length-prefixed feature records and a
+ * CRC32 of everything before it. It is written to a temporary file then moved in place, therefore readers never see
+ * a partially written snapshot.
+ */
+public final class FeatureSnapshotFile {
+    private static final int MAGIC = 0x495A4653;
+    private static final int VERSION = 1;
+
+    private static final byte BOOLEAN_FEATURE = 0;
+    private static final byte STRING_FEATURE = 1;
+    private static final byte NUMBER_FEATURE = 2;
+
+    private static final byte CLASSICAL_OVERLOAD = 0;
+    private static final byte VALUED_OVERLOAD = 1;
+    private static final byte SCRIPT_OVERLOAD = 2;
+
+    private static final byte NO_RULE = 0;
+    private static final byte USER_LIST = 1;
+    private static final byte USER_PERCENTAGE = 2;
+
+    private FeatureSnapshotFile() {
+    }
+
+    /**
+     * Write given features to a snapshot file, replacing existing one atomically.
+     * @param file snapshot file
+     * @param features features to write
+     * @throws IzanamiException if file can't be written
+     */
+    public static void write(Path file, Collection<? extends Feature<?>> features) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(features.size());
+            var record = new ByteArrayOutputStream();
+            var recordOut = new DataOutputStream(record);
+            for (Feature<?> feature : features) {
+                record.reset();
+                writeFeature(recordOut, feature);
+                recordOut.flush();
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+            out.flush();
+            var crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IzanamiException(e);
+        }
+
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    var buffer = ByteBuffer.wrap(bytes.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                try {
+                    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new IzanamiException(e);
+        }
+    }
+
+    /**
+     * Read features from a snapshot file.
+     * @param file snapshot file
+     * @return features by id, empty if file doesn't exist
+     * @throws IzanamiException if file can't be read or is corrupted
+     */
+    public static Map<String, Feature<?>> read(Path file) {
+        if (!Files.exists(file)) {
+            return Map.of();
+        }
+        ByteBuffer buffer;
+        try {
+            // not memory mapped: a mapped file can't be replaced on Windows until it's garbage collected,
+            // and it's entirely decoded right away anyway
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new IzanamiException(e);
+        }
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IzanamiException("Corrupted feature snapshot " + file + " : " + e);
+        }
+    }
+
+    private static Map<String, Feature<?>> read(ByteBuffer buffer) {
+        if (buffer.remaining() < 16) {
+            throw new IllegalArgumentException("file is too short");
+        }
+        int contentLength = buffer.limit() - 4;
+        var crc = new CRC32();
+        crc.update(buffer.duplicate().limit(contentLength));
+        if ((int) crc.getValue() != buffer.getInt(contentLength)) {
+            throw new IllegalArgumentException("checksum mismatch");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a feature snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported version " + version);
+        }
+        int count = buffer.getInt();
+        Map<String, Feature<?>> features = new HashMap<>(Math.max(16, count * 2));
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            var record = buffer.slice().limit(length);
+            buffer.position(buffer.position() + length);
+            Feature<?> feature = readFeature(record);
+            features.put(feature.id, feature);
+        }
+        return features;
+    }
+
+    private static void writeFeature(DataOutputStream out, Feature<?> feature) throws IOException {
+        if (feature instanceof Feature.BooleanFeature) {
+            out.writeByte(BOOLEAN_FEATURE);
+        } else if (feature instanceof Feature.StringFeature) {
+            out.writeByte(STRING_FEATURE);
+        } else if (feature instanceof Feature.NumberFeature) {
+            out.writeByte(NUMBER_FEATURE);
+        } else {
+            throw new IzanamiException("Unsupported feature type " + feature.getClass().getName());
+        }
+        writeString(out, feature.id);
+        writeString(out, feature.name);
+        writeString(out, feature.project);
+        writeValue(out, feature.active);
+        out.writeInt(feature.conditions.size());
+        for (var entry : feature.conditions.entrySet()) {
+            writeString(out, entry.getKey());
+            writeOverload(out, entry.getValue());
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Feature<?> readFeature(ByteBuffer in) {
+        byte type = in.get();
+        String id = readString(in);
+        String name = readString(in);
+        String project = Interner.string(readString(in));
+        FeatureValue active = readValue(in);
+        int overloadCount = in.getInt();
+        Map overloads = new HashMap<>();
+        for (int i = 0; i < overloadCount; i++) {
+            String context = Interner.string(readString(in));
+            overloads.put(context, readOverload(in));
+        }
+        switch (type) {
+            case BOOLEAN_FEATURE:
+                return new Feature.BooleanFeature(id, name, project, active.booleanValue(null), overloads);
+            case STRING_FEATURE:
+                return new Feature.StringFeature(id, name, project, active.stringValue(), overloads);
+            case NUMBER_FEATURE:
+                return new Feature.NumberFeature(id, name, project, active.numberValue(), overloads);
+            default:
+                throw new IllegalArgumentException("unknown feature type " + type);
+        }
+    }
+
+    private static void writeOverload(DataOutputStream out, FeatureOverload<?> overload) throws IOException {
+        if (overload instanceof ClassicalOverload) {
+            out.writeByte(CLASSICAL_OVERLOAD);
+            out.writeBoolean(overload.enabled);
+            var conditions = ((ClassicalOverload) overload).conditions;
+            out.writeInt(conditions.size());
+            for (ActivationCondition condition : conditions) {
+                writeCondition(out, condition);
+            }
+        } else if (overload instanceof FeatureOverload.ValuedOverload) {
+            var valued = (FeatureOverload.ValuedOverload<?>) overload;
+            out.writeByte(VALUED_OVERLOAD);
+            out.writeBoolean(overload.enabled);
+            writeValue(out, valued.value);
+            out.writeInt(valued.conditions.size());
+            for (var condition : valued.conditions) {
+                writeCondition(out, condition);
+                writeValue(out, condition.value);
+            }
+        } else if (overload instanceof WasmFeatureOverload) {
+            out.writeByte(SCRIPT_OVERLOAD);
+            out.writeBoolean(overload.enabled);
+            writeString(out, ((WasmFeatureOverload<?>) overload).wasmConfig.name);
+        } else {
+            throw new IzanamiException("Unsupported overload type " + overload.getClass().getName());
+        }
+    }
+
+    private static FeatureOverload<?> readOverload(ByteBuffer in) {
+        byte type = in.get();
+        boolean enabled = in.get() != 0;
+        switch (type) {
+            case CLASSICAL_OVERLOAD: {
+                int count = in.getInt();
+                List<ActivationCondition> conditions = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    conditions.add(ActivationCondition.shared(readCondition(in)));
+                }
+                return FeatureOverload.shared(new ClassicalOverload(enabled, conditions));
+            }
+            case VALUED_OVERLOAD: {
+                FeatureValue value = readValue(in);
+                int count = in.getInt();
+                if (value instanceof StringValue) {
+                    List<StringValuedActivationCondition> conditions = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        var condition = readCondition(in);
+                        conditions.add(ActivationCondition.shared(StringValuedActivationCondition.fromCondition(condition, readValue(in).stringValue())));
+                    }
+                    return FeatureOverload.shared(new StringOverload(enabled, conditions, (StringValue) value));
+                } else if (value instanceof NumberValue) {
+                    List<NumberValuedActivationCondition> conditions = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        var condition = readCondition(in);
+                        conditions.add(ActivationCondition.shared(NumberValuedActivationCondition.fromCondition(condition, readValue(in).numberValue())));
+                    }
+                    return FeatureOverload.shared(new NumberOverload(enabled, conditions, (NumberValue) value));
+                }
+                throw new IllegalArgumentException("unexpected overload value " + value);
+            }
+            case SCRIPT_OVERLOAD:
+                return FeatureOverload.shared(new WasmFeatureOverload<>(enabled, new WasmConfig(readString(in))));
+            default:
+                throw new IllegalArgumentException("unknown overload type " + type);
+        }
+    }
+
+    private static void writeCondition(DataOutputStream out, ActivationCondition condition) throws IOException {
+        FeaturePeriod period = condition.period();
+        out.writeBoolean(period != null);
+        if (period != null) {
+            writeInstant(out, period.begin);
+            writeInstant(out, period.end);
+            out.writeInt(period.hourPeriods.size());
+            for (HourPeriod hours : period.hourPeriods) {
+                out.writeLong(hours.startTime.toNanoOfDay());
+                out.writeLong(hours.endTime.toNanoOfDay());
+            }
+            out.writeBoolean(period.activationDays.isPresent());
+            if (period.activationDays.isPresent()) {
+                int days = 0;
+                for (DayOfWeek day : period.activationDays.get().days) {
+                    days |= 1 << day.ordinal();
+                }
+                out.writeByte(days);
+            }
+            writeString(out, period.timezone.getId());
+        }
+        ActivationRule rule = condition.rule();
+        if (rule instanceof UserList) {
+            out.writeByte(USER_LIST);
+            var users = ((UserList) rule).users;
+            out.writeInt(users.size());
+            for (String user : users) {
+                writeString(out, user);
+            }
+        } else if (rule instanceof UserPercentage) {
+            out.writeByte(USER_PERCENTAGE);
+            out.writeInt(((UserPercentage) rule).percentage);
+        } else {
+            out.writeByte(NO_RULE);
+        }
+    }
+
+    private static ActivationCondition readCondition(ByteBuffer in) {
+        FeaturePeriod period = null;
+        if (in.get() != 0) {
+            period = new FeaturePeriod();
+            period.begin = readInstant(in);
+            period.end = readInstant(in);
+            int hourCount = in.getInt();
+            Set<HourPeriod> hourPeriods = new HashSet<>();
+            for (int i = 0; i < hourCount; i++) {
+                var hours = new HourPeriod();
+                hours.startTime = LocalTime.ofNanoOfDay(in.getLong());
+                hours.endTime = LocalTime.ofNanoOfDay(in.getLong());
+                hourPeriods.add(hours);
+            }
+            period.hourPeriods = hourPeriods;
+            if (in.get() != 0) {
+                int mask = in.get();
+                var days = new ActivationDayOfWeeks();
+                days.days = EnumSet.noneOf(DayOfWeek.class);
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    if ((mask & (1 << day.ordinal())) != 0) {
+                        days.days.add(day);
+                    }
+                }
+                period.activationDays = Optional.of(days);
+            }
+            period.timezone = ZoneId.of(readString(in));
+            period = FeaturePeriod.shared(period);
+        }
+        byte ruleType = in.get();
+        switch (ruleType) {
+            case NO_RULE:
+                return new ActivationCondition(period, null);
+            case USER_LIST: {
+                int count = in.getInt();
+                List<String> users = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    users.add(readString(in));
+                }
+                return new ActivationCondition(period, UserList.shared(CompactUserSet.shared(users)));
+            }
+            case USER_PERCENTAGE:
+                return new ActivationCondition(period, new UserPercentage(in.getInt()));
+            default:
+                throw new IllegalArgumentException("unknown rule type " + ruleType);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, FeatureValue value) throws IOException {
+        if (value instanceof BooleanValue) {
+            Boolean bool = value.booleanValue(null);
+            out.writeByte('B');
+            out.writeByte(bool == null ? -1 : bool ? 1 : 0);
+        } else if (value instanceof StringValue) {
+            out.writeByte('S');
+            writeString(out, value.stringValue());
+        } else if (value instanceof NumberValue) {
+            BigDecimal number = value.numberValue();
+            out.writeByte('N');
+            writeString(out, number == null ? null : number.toString());
+        } else {
+            out.writeByte(0);
+        }
+    }
+
+    private static FeatureValue readValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case 'B': {
+                byte bool = in.get();
+                return bool < 0 ? new BooleanValue(null) : BooleanValue.of(bool == 1);
+            }
+            case 'S':
+                return new StringValue(Interner.string(readString(in)));
+            case 'N': {
+                String number = readString(in);
+                return new NumberValue(number == null ? null : new BigDecimal(number));
+            }
+            case 0:
+                return null;
+            default:
+                throw new IllegalArgumentException("unknown value type " + type);
+        }
+    }
+
+    private static void writeInstant(DataOutputStream out, Optional<Instant> instant) throws IOException {
+        out.writeBoolean(instant.isPresent());
+        if (instant.isPresent()) {
+            out.writeLong(instant.get().getEpochSecond());
+            out.writeInt(instant.get().getNano());
+        }
+    }
+
+    private static Optional<Instant> readInstant(ByteBuffer in) {
+        if (in.get() == 0) {
+            return Optional.empty();
+        }
+        long seconds = in.getLong();
+        return Optional.of(Instant.ofEpochSecond(seconds, in.getInt()));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
@@ -4,18 +4,36 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.util.Objects;
 
 public class HourPeriod {
     public LocalTime startTime;
     public LocalTime endTime;
 
     public boolean active(ZoneId timezone) {
-        var zonedStart = LocalDateTime.of(LocalDate.now(), startTime)
-                .atZone(timezone).toInstant();
-        var zonedEnd = LocalDateTime.of(LocalDate.now(), endTime)
-                .atZone(timezone).toInstant();
-        var now = LocalDateTime.now().atZone(timezone).toInstant();
+        long now = System.currentTimeMillis();
+        LocalDate today = LocalDate.now(timezone);
+        return start(today, timezone) < now && end(today, timezone) > now;
+    }
+
+    long start(LocalDate day, ZoneId timezone) {
+        return LocalDateTime.of(day, startTime).atZone(timezone).toInstant().toEpochMilli();
+    }
+
+    long end(LocalDate day, ZoneId timezone) {
+        return LocalDateTime.of(day, endTime).atZone(timezone).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HourPeriod that = (HourPeriod) o;
+        return Objects.equals(startTime, that.startTime) && Objects.equals(endTime, that.endTime);
+    }
 
-        return zonedStart.isBefore(now) && zonedEnd.isAfter(now);
+    @Override
+    public int hashCode() {
+        return Objects.hash(startTime, endTime);
     }
 }
@@ -0,0 +1,47 @@
+package fr.maif.features;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonicalizes equal immutable values so that a single instance is retained.
+ * Instances are weakly referenced and disappear once no feature uses them anymore.
+ * @param <T> type of interned values, must be immutable with consistent equals and hashCode
+ */
+public final class Interner<T> {
+    private static final Interner<String> STRINGS = new Interner<>();
+    private final Map<T, WeakReference<T>> instances = new WeakHashMap<>();
+
+    /**
+     * @param value string to share, such as a project name, a context or a feature value
+     * @return canonical instance equal to given string
+     */
+    public static String string(String value) {
+        return STRINGS.intern(value);
+    }
+
+    /**
+     * @param value value to intern
+     * @return canonical instance equal to given value, given value itself if none was known yet
+     */
+    public synchronized T intern(T value) {
+        if (value == null) {
+            return null;
+        }
+        WeakReference<T> reference = instances.get(value);
+        T canonical = reference == null ? null : reference.get();
+        if (canonical == null) {
+            instances.put(value, new WeakReference<>(value));
+            return value;
+        }
+        return canonical;
+    }
+
+    /**
+     * @return number of distinct values currently interned
+     */
+    public synchronized int size() {
+        return instances.size();
+    }
+}
@@ -0,0 +1,120 @@
+package fr.maif.features;
+
+/**
+ * MurmurHash3 x86_32 implementation that hashes UTF-8 encoding of strings without materializing it.
+ * Results are identical to hashing {@code string.getBytes(StandardCharsets.UTF_8)}, unpaired surrogates being
+ * encoded as '?' like {@link String#getBytes(java.nio.charset.Charset)} does.
+ * Hash state of a constant prefix can be computed once with {@link Murmur3#prefix(CharSequence, int)} and reused.
+ */
+public final class Murmur3 {
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private Murmur3() {
+    }
+
+    /**
+     * Hash state after hashing a prefix, it can be shared between threads.
+     */
+    public static final class Prefix {
+        private final int hash;
+        private final int tail;
+        private final int length;
+
+        private Prefix(int hash, int tail, int length) {
+            this.hash = hash;
+            this.tail = tail;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Compute hash state for given prefix
+     * @param prefix prefix to hash
+     * @param seed hash seed
+     * @return hash state that can be used to hash strings starting with given prefix
+     */
+    public static Prefix prefix(CharSequence prefix, int seed) {
+        int hash = seed;
+        int tail = 0;
+        int length = 0;
+        int size = prefix.length();
+        for (int i = 0; i < size; ) {
+            long encoded = Utf8.encode(prefix, i);
+            int count = (int) (encoded >>> 32);
+            int bytes = (int) encoded;
+            i += count == 4 ? 2 : 1;
+            for (int j = 0; j < count; j++) {
+                tail |= ((bytes >>> (j << 3)) & 0xff) << ((length & 3) << 3);
+                if ((length & 3) == 3) {
+                    hash = mix(tail, hash);
+                    tail = 0;
+                }
+                length++;
+            }
+        }
+        return new Prefix(hash, tail, length);
+    }
+
+    /**
+     * Hash UTF-8 encoding of given string
+     * @param value string to hash
+     * @param seed hash seed
+     * @return MurmurHash3 x86_32 hash
+     */
+    public static int hash32x86(CharSequence value, int seed) {
+        return hash32x86(new Prefix(seed, 0, 0), value);
+    }
+
+    /**
+     * Hash UTF-8 encoding of prefix followed by suffix, without allocating.
+     * @param prefix hash state of the prefix
+     * @param suffix string to append to prefix
+     * @return MurmurHash3 x86_32 hash
+     */
+    public static int hash32x86(Prefix prefix, CharSequence suffix) {
+        int hash = prefix.hash;
+        int tail = prefix.tail;
+        int length = prefix.length;
+        int size = suffix.length();
+        for (int i = 0; i < size; ) {
+            long encoded = Utf8.encode(suffix, i);
+            int count = (int) (encoded >>> 32);
+            int bytes = (int) encoded;
+            i += count == 4 ? 2 : 1;
+            for (int j = 0; j < count; j++) {
+                tail |= ((bytes >>> (j << 3)) & 0xff) << ((length & 3) << 3);
+                if ((length & 3) == 3) {
+                    hash = mix(tail, hash);
+                    tail = 0;
+                }
+                length++;
+            }
+        }
+        if ((length & 3) != 0) {
+            int k = tail * C1;
+            k = Integer.rotateLeft(k, 15);
+            k *= C2;
+            hash ^= k;
+        }
+        return finalMix(hash, length);
+    }
+
+    private static int mix(int k, int hash) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        k *= C2;
+        hash ^= k;
+        return Integer.rotateLeft(hash, 13) * 5 + 0xe6546b64;
+    }
+
+    private static int finalMix(int hash, int length) {
+        hash ^= length;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,31 @@
+package fr.maif.features;
+
+import fr.maif.features.FeatureOverload.WasmConfig;
+import fr.maif.features.values.FeatureValue;
+
+import java.util.Optional;
+
+/**
+ * Extension point for in-process evaluation of script (WASM) features. When configured, script features found in
+ * cache are evaluated locally instead of being sent to remote Izanami.
+ * <p>
+ * This client doesn't ship a WebAssembly runtime, hence doesn't provide any implementation: without one, script
+ * features are always evaluated by remote Izanami. Implementations typically download the module named by
+ * {@link WasmConfig#name} from Izanami, cache it, and pool instances of it, since a WASM instance can't run
+ * two evaluations at once. They must be thread safe and should not block, since they run on flag checks.
+ */
+@FunctionalInterface
+public interface ScriptEvaluator {
+    /**
+     * Evaluate a script overload
+     * @param feature evaluated feature
+     * @param script script to run, as referenced by the feature overload
+     * @param context context to evaluate feature for, may be null
+     * @param user user to evaluate feature for, may be null
+     * @param payload request payload, may be null
+     * @return script result, which must match feature type (BooleanValue for boolean features, and so on).
+     * Empty if script can't be evaluated locally, feature is then evaluated by remote Izanami.
+     * Exceptions are handled the same way.
+     */
+    Optional<FeatureValue> evaluate(Feature<?> feature, WasmConfig script, String context, String user, String payload);
+}
@@ -1,15 +1,41 @@
 package fr.maif.features;
 
+import java.util.Objects;
 import java.util.Set;
 
 public class UserList implements ActivationRule {
-    public Set<String> users;
+    private static final Interner<UserList> INTERNER = new Interner<>();
+    public final Set<String> users;
 
+    /**
+     * @param users users for which rule is active, they are copied to an immutable {@link CompactUserSet}
+     *              shared between identical lists
+     */
     public UserList(Set<String> users) {
-        this.users = users;
+        this.users = CompactUserSet.shared(users);
+    }
+
+    /**
+     * @param users users for which rule is active
+     * @return a rule shared with every other list containing the same users
+     */
+    public static UserList shared(Set<String> users) {
+        return INTERNER.intern(new UserList(users));
     }
 
     public boolean active(String user, String featureId){
         return users.contains(user);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Objects.equals(users, ((UserList) o).users);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(users);
+    }
 }
@@ -1,19 +1,36 @@
 package fr.maif.features;
 
-import org.apache.commons.codec.digest.MurmurHash3;
-
 public class UserPercentage implements ActivationRule {
+    private static final int SEED = 42;
     public Integer percentage;
 
+    /**
+     * Hash state of "feature-" prefix for the last evaluated feature, recomputed if feature name changes.
+     */
+    private volatile FeaturePrefix prefix;
+
     public UserPercentage(Integer percentage) {
         this.percentage = percentage;
     }
 
     @Override
     public boolean active(String user, String feature) {
-        String toHash = feature + "-" + user;
-        var bytes = toHash.getBytes();
-        long hash = (Math.abs(MurmurHash3.hash32x86(bytes, 0, bytes.length, 42)) % 100) + 1;
-        return hash <= percentage;
+        FeaturePrefix currentPrefix = prefix;
+        if (currentPrefix == null || !currentPrefix.feature.equals(feature)) {
+            currentPrefix = new FeaturePrefix(feature);
+            prefix = currentPrefix;
+        }
+        int hash = Murmur3.hash32x86(currentPrefix.state, user == null ? "null" : user);
+        return (Math.abs(hash) % 100) + 1 <= percentage;
+    }
+
+    private static final class FeaturePrefix {
+        private final String feature;
+        private final Murmur3.Prefix state;
+
+        private FeaturePrefix(String feature) {
+            this.feature = String.valueOf(feature);
+            this.state = Murmur3.prefix(feature + "-", SEED);
+        }
     }
 }
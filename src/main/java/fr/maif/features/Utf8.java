@@ -0,0 +1,63 @@
+package fr.maif.features;
+
+/**
+ * UTF-8 encoding helpers that work on chars directly, without allocating byte arrays.
+ * Unpaired surrogates are encoded as '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+final class Utf8 {
+    private Utf8() {
+    }
+
+    /**
+     * Encode code point starting at given index.
+     * @return encoded bytes (first byte in lowest bits) in low 32 bits, and byte count in high 32 bits.
+     * A byte count of 4 means that two chars (a surrogate pair) were consumed.
+     */
+    static long encode(CharSequence value, int index) {
+        char c = value.charAt(index);
+        if (c < 0x80) {
+            return (1L << 32) | c;
+        } else if (c < 0x800) {
+            return (2L << 32) | ((0x80 | (c & 0x3f)) << 8) | (0xc0 | (c >> 6));
+        } else if (Character.isSurrogate(c)) {
+            if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+                return (4L << 32) | (((0x80 | (codePoint & 0x3f)) << 24)
+                        | ((0x80 | ((codePoint >> 6) & 0x3f)) << 16)
+                        | ((0x80 | ((codePoint >> 12) & 0x3f)) << 8)
+                        | (0xf0 | (codePoint >> 18))) & 0xffffffffL;
+            }
+            return (1L << 32) | '?';
+        } else {
+            return (3L << 32) | ((0x80 | (c & 0x3f)) << 16) | ((0x80 | ((c >> 6) & 0x3f)) << 8) | (0xe0 | (c >> 12));
+        }
+    }
+
+    /**
+     * Compare UTF-8 encoding of given string with given bytes
+     * @param value string to compare
+     * @param bytes byte array containing UTF-8 encoded string
+     * @param from index of the first byte to compare
+     * @param to index after the last byte to compare
+     * @return true if value encoding is exactly bytes[from, to)
+     */
+    static boolean equals(CharSequence value, byte[] bytes, int from, int to) {
+        int position = from;
+        int size = value.length();
+        for (int i = 0; i < size; ) {
+            long encoded = encode(value, i);
+            int count = (int) (encoded >>> 32);
+            int encodedBytes = (int) encoded;
+            i += count == 4 ? 2 : 1;
+            if (position + count > to) {
+                return false;
+            }
+            for (int j = 0; j < count; j++) {
+                if (bytes[position++] != (byte) (encodedBytes >>> (j << 3))) {
+                    return false;
+                }
+            }
+        }
+        return position == to;
+    }
+}
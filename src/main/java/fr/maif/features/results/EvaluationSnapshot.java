@@ -0,0 +1,142 @@
+package fr.maif.features.results;
+
+import fr.maif.features.Feature;
+import fr.maif.features.values.BooleanCastStrategy;
+import fr.maif.features.values.FeatureValue;
+import fr.maif.features.values.NullValue;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Immutable values of all locally known features for a given user and context.
+ * Features that can't be evaluated locally (script features) are absent from the snapshot.
+ */
+public final class EvaluationSnapshot {
+    /**
+     * Number of features above which evaluation is performed in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    private final String[] ids;
+    private final FeatureValue[] values;
+    private final BooleanCastStrategy castStrategy;
+
+    private EvaluationSnapshot(String[] ids, FeatureValue[] values, BooleanCastStrategy castStrategy) {
+        this.ids = ids;
+        this.values = values;
+        this.castStrategy = castStrategy;
+    }
+
+    /**
+     * Evaluate given features
+     * @param features features to evaluate
+     * @param context context to evaluate features for
+     * @param user user to evaluate features for
+     * @param now evaluation instant, as milliseconds since epoch
+     * @param castStrategy cast strategy to use when non-boolean values are read as boolean
+     * @return a snapshot containing values of features that could be evaluated locally
+     */
+    public static EvaluationSnapshot evaluate(
+            Collection<? extends Feature<?>> features,
+            String context,
+            String user,
+            long now,
+            BooleanCastStrategy castStrategy
+    ) {
+        Stream<? extends Feature<?>> stream = features.size() >= PARALLEL_THRESHOLD ? features.parallelStream() : features.stream();
+        Entry[] entries = stream
+                .map(feature -> {
+                    Optional<? extends FeatureValue> value = feature.value(context, user, now);
+                    if (Objects.isNull(value)) {
+                        return new Entry(feature.id, new NullValue());
+                    }
+                    return value.<Entry>map(v -> new Entry(feature.id, v)).orElse(null);
+                })
+                .filter(Objects::nonNull)
+                .toArray(Entry[]::new);
+        if (entries.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(entries);
+        } else {
+            Arrays.sort(entries);
+        }
+
+        String[] ids = new String[entries.length];
+        FeatureValue[] values = new FeatureValue[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            ids[i] = entries[i].id;
+            values[i] = entries[i].value;
+        }
+        return new EvaluationSnapshot(ids, values, castStrategy);
+    }
+
+    private FeatureValue find(String feature) {
+        int index = Arrays.binarySearch(ids, feature);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * @param feature feature id
+     * @return whether given feature is present in this snapshot
+     */
+    public boolean contains(String feature) {
+        return Arrays.binarySearch(ids, feature) >= 0;
+    }
+
+    /**
+     * @param feature feature id
+     * @return boolean value of given feature, non-boolean values are cast using client cast strategy. Null if feature is absent.
+     */
+    public Boolean booleanValue(String feature) {
+        FeatureValue value = find(feature);
+        return Objects.isNull(value) ? null : value.booleanValue(castStrategy);
+    }
+
+    /**
+     * @param feature feature id
+     * @return string value of given feature, null if feature is absent
+     */
+    public String stringValue(String feature) {
+        FeatureValue value = find(feature);
+        return Objects.isNull(value) ? null : value.stringValue();
+    }
+
+    /**
+     * @param feature feature id
+     * @return number value of given feature, null if feature is absent
+     */
+    public BigDecimal numberValue(String feature) {
+        FeatureValue value = find(feature);
+        return Objects.isNull(value) ? null : value.numberValue();
+    }
+
+    /**
+     * @return ids of features present in this snapshot, in ascending order
+     */
+    public List<String> features() {
+        return Collections.unmodifiableList(Arrays.asList(ids));
+    }
+
+    /**
+     * @return number of features in this snapshot
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String id;
+        private final FeatureValue value;
+
+        private Entry(String id, FeatureValue value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return id.compareTo(other.id);
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package fr.maif.features.values;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 public class BooleanValue implements FeatureValue {
+    public static final BooleanValue TRUE = new BooleanValue(true);
+    public static final BooleanValue FALSE = new BooleanValue(false);
+
     private Boolean value;
 
     public BooleanValue(Boolean value) {
         this.value = value;
     }
 
+    /**
+     * Shared instance for given value, this avoids allocating a new value for each evaluation
+     * @param value boolean value
+     * @return {@link BooleanValue#TRUE} or {@link BooleanValue#FALSE}
+     */
+    public static BooleanValue of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
     @Override
     public String stringValue() {
         throw new IllegalArgumentException("Cannot convert Boolean to string");
@@ -23,4 +36,16 @@ public class BooleanValue implements FeatureValue {
     public BigDecimal numberValue() {
         throw new IllegalArgumentException("Cannot convert Boolean to bigdecimal");
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Objects.equals(value, ((BooleanValue) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
 }
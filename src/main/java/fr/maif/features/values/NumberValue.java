@@ -1,6 +1,7 @@
 package fr.maif.features.values;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 public class NumberValue implements FeatureValue {
     private BigDecimal value;
@@ -30,4 +31,16 @@ public class NumberValue implements FeatureValue {
     public BigDecimal numberValue() {
         return value;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Objects.equals(value, ((NumberValue) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
 }
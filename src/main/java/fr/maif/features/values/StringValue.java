@@ -3,6 +3,7 @@ package fr.maif.features.values;
 import fr.maif.errors.IzanamiException;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 public class StringValue implements FeatureValue {
     private String value;
@@ -32,4 +33,16 @@ public class StringValue implements FeatureValue {
     public BigDecimal numberValue() {
         throw new IllegalArgumentException("Cannot convert String to BigDecimal");
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Objects.equals(value, ((StringValue) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
 }
@@ -0,0 +1,172 @@
+package fr.maif.http;
+
+import fr.maif.CircuitBreakerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count based circuit breaker: outcomes of last calls are kept in a ring buffer, breaker opens when their failure
+ * rate or slow call rate reaches configured threshold.
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    /**
+     * Error of calls rejected because breaker is open
+     */
+    public static final String REJECTION_MESSAGE = "Circuit breaker is open, remote Izanami was not called";
+
+    public enum State {
+        /**
+         * Calls are let through and their outcomes recorded
+         */
+        CLOSED,
+        /**
+         * Calls are rejected without reaching remote Izanami
+         */
+        OPEN,
+        /**
+         * A limited number of probe calls are let through, their outcomes decide whether breaker closes or opens again
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Failure of calls rejected because breaker is open, without stack trace since it's expected and frequent.
+     */
+    public static final class OpenCircuitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OpenCircuitException() {
+            super(REJECTION_MESSAGE, null, false, false);
+        }
+    }
+
+    private final CircuitBreakerConfiguration configuration;
+    private final LongSupplier nanoTime;
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failureCount;
+    private int slowCallCount;
+    private int probes;
+    private long openedAt;
+
+    /**
+     * Time spent in open state is measured with {@link System#nanoTime()}, which is monotonic, rather than with
+     * the clock used to evaluate features: a fixed or adjusted clock must not keep the breaker open.
+     * @param configuration thresholds and window of this breaker
+     */
+    public CircuitBreaker(CircuitBreakerConfiguration configuration) {
+        this(configuration, System::nanoTime);
+    }
+
+    /**
+     * @param configuration thresholds and window of this breaker
+     * @param nanoTime monotonic time source, in nanoseconds
+     */
+    CircuitBreaker(CircuitBreakerConfiguration configuration, LongSupplier nanoTime) {
+        this.configuration = configuration;
+        this.nanoTime = nanoTime;
+        this.failures = new boolean[configuration.slidingWindowSize];
+        this.slowCalls = new boolean[configuration.slidingWindowSize];
+    }
+
+    /**
+     * @return current breaker state, an open breaker is reported as open until a call is attempted after its wait duration
+     */
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * @return failure rate of calls recorded in current state, between 0 and 1
+     */
+    public synchronized double failureRate() {
+        return recorded == 0 ? 0 : (double) failureCount / recorded;
+    }
+
+    /**
+     * @return slow call rate of calls recorded in current state, between 0 and 1
+     */
+    public synchronized double slowCallRate() {
+        return recorded == 0 ? 0 : (double) slowCallCount / recorded;
+    }
+
+    /**
+     * Indicate whether a call can be performed. Open breaker becomes half-open once its wait duration is elapsed.
+     * @return true if call can be performed, its outcome must then be reported with {@link CircuitBreaker#onResult(long, boolean)}
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoTime.getAsLong() - openedAt < configuration.waitDurationInOpenState.toNanos()) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= configuration.permittedCallsInHalfOpenState) {
+                return false;
+            }
+            probes++;
+        }
+        return true;
+    }
+
+    /**
+     * Record outcome of a permitted call.
+     * @param durationNanos call duration, in nanoseconds
+     * @param success whether call succeeded
+     */
+    public synchronized void onResult(long durationNanos, boolean success) {
+        if (state == State.OPEN) {
+            // late outcome of a call started before breaker opened
+            return;
+        }
+        boolean slow = durationNanos > configuration.slowCallDuration.toNanos();
+        if (recorded == failures.length) {
+            failureCount -= failures[next] ? 1 : 0;
+            slowCallCount -= slowCalls[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failures[next] = !success;
+        slowCalls[next] = slow;
+        failureCount += success ? 0 : 1;
+        slowCallCount += slow ? 1 : 0;
+        next = (next + 1) % failures.length;
+
+        int minimum = state == State.HALF_OPEN
+                ? Math.min(configuration.permittedCallsInHalfOpenState, failures.length)
+                : configuration.minimumNumberOfCalls;
+        if (recorded < minimum) {
+            return;
+        }
+        double failureRate = (double) failureCount / recorded;
+        double slowCallRate = (double) slowCallCount / recorded;
+        if (failureRate >= configuration.failureRateThreshold || slowCallRate >= configuration.slowCallRateThreshold) {
+            LOGGER.warn("Opening circuit breaker for {} seconds, failure rate is {}% and slow call rate is {}%",
+                    configuration.waitDurationInOpenState.toSeconds(), Math.round(failureRate * 100), Math.round(slowCallRate * 100));
+            transitionTo(State.OPEN);
+        } else if (state == State.HALF_OPEN) {
+            LOGGER.info("Closing circuit breaker, remote Izanami is reachable again");
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        LOGGER.debug("Circuit breaker goes from {} to {}", state, newState);
+        state = newState;
+        recorded = 0;
+        next = 0;
+        failureCount = 0;
+        slowCallCount = 0;
+        probes = 0;
+        if (newState == State.OPEN) {
+            openedAt = nanoTime.getAsLong();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package fr.maif.http;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP client that guards another one with a circuit breaker. Calls rejected by the breaker fail immediately
+ * with a {@link CircuitBreaker.OpenCircuitException}. Errors, as well as 5xx responses, count as failures.
+ */
+public class CircuitBreakingHttpClient implements IzanamiHttpClient {
+    public final IzanamiHttpClient underlying;
+    public final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakingHttpClient(IzanamiHttpClient underlying, CircuitBreaker circuitBreaker) {
+        this.underlying = underlying;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public CompletableFuture<IzanamiHttpResponse> apply(IzanamiHttpRequest request) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(new CircuitBreaker.OpenCircuitException());
+        }
+        long start = System.nanoTime();
+        CompletableFuture<IzanamiHttpResponse> response;
+        try {
+            response = underlying.apply(request);
+        } catch (RuntimeException e) {
+            circuitBreaker.onResult(System.nanoTime() - start, false);
+            throw e;
+        }
+        return response.whenComplete((resp, error) ->
+                circuitBreaker.onResult(System.nanoTime() - start, Objects.isNull(error) && resp.status < 500));
+    }
+}
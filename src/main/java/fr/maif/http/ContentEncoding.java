@@ -0,0 +1,64 @@
+package fr.maif.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiation and decoding of compressed response bodies.
+ */
+public final class ContentEncoding {
+    /**
+     * Value of Accept-Encoding header sent when compression is enabled
+     */
+    public static final String ACCEPTED = "gzip, deflate";
+
+    private ContentEncoding() {}
+
+    /**
+     * @param headers response headers
+     * @return whether response body is compressed with a supported encoding
+     */
+    public static boolean isCompressed(HttpHeaders headers) {
+        String encoding = encoding(headers);
+        return "gzip".equals(encoding) || "deflate".equals(encoding);
+    }
+
+    /**
+     * Wrap given body so that it's decompressed while being read. Reading gzip header may block, so this must not be
+     * called from HTTP client internal threads.
+     * Decompressed streams report no available bytes: JDK inflater streams claim data is available until their end,
+     * which makes readers wait for more input instead of returning what was already received on event streams.
+     * @param headers response headers, whose Content-Encoding indicates body compression
+     * @param body raw response body
+     * @return decompressed body, given body if it isn't compressed
+     * @throws IOException if gzip header can't be read
+     */
+    public static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        switch (encoding(headers)) {
+            case "gzip":
+                return new GZIPInputStream(body) {
+                    @Override
+                    public int available() {
+                        return 0;
+                    }
+                };
+            case "deflate":
+                return new InflaterInputStream(body) {
+                    @Override
+                    public int available() {
+                        return 0;
+                    }
+                };
+            default:
+                return body;
+        }
+    }
+
+    private static String encoding(HttpHeaders headers) {
+        return headers.firstValue("Content-Encoding").map(value -> value.trim().toLowerCase(Locale.ROOT)).orElse("identity");
+    }
+}
@@ -8,9 +8,11 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -53,14 +55,56 @@ public final class HttpRequester {
     static <T> CompletableFuture<Result<T>> performCall(
             ClientConfiguration configuration,
             IzanamiHttpRequest request,
-            Function<String, Result<T>> responseMapper
+            Function<IzanamiHttpResponse, Result<T>> responseMapper
     ) {
         return configuration.httpClient.apply(request)
-                .thenApply(resp -> responseMapper.apply(resp.body));
+                .handle((response, error) -> {
+                    if (Objects.isNull(error)) {
+                        return responseMapper.apply(response);
+                    }
+                    Throwable cause = error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
+                    if (cause instanceof CircuitBreaker.OpenCircuitException) {
+                        // error strategy (or last known value) is used right away
+                        return new Result<>(CircuitBreaker.REJECTION_MESSAGE);
+                    }
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                });
     }
     public static CompletableFuture<Result<Map<String, Feature>>> performRequest(
             ClientConfiguration configuration,
             FeatureRequest request
+    ) {
+        return performResponseRequest(configuration, request, ResponseUtils::parseFeatureResponse);
+    }
+
+    /**
+     * Perform a feature request, letting caller handle response body as a String
+     * @param configuration client configuration
+     * @param request feature request
+     * @param responseMapper function mapping response body to a result
+     * @return a future containing mapped response
+     * @param <T> type of mapped response
+     */
+    public static <T> CompletableFuture<Result<T>> performRequest(
+            ClientConfiguration configuration,
+            FeatureRequest request,
+            Function<String, Result<T>> responseMapper
+    ) {
+        return performResponseRequest(configuration, request, response -> responseMapper.apply(response.bodyAsString()));
+    }
+
+    /**
+     * Perform a feature request, letting caller handle raw response, whose body may be read as bytes or stream
+     * @param configuration client configuration
+     * @param request feature request
+     * @param responseMapper function mapping response to a result
+     * @return a future containing mapped response
+     * @param <T> type of mapped response
+     */
+    public static <T> CompletableFuture<Result<T>> performResponseRequest(
+            ClientConfiguration configuration,
+            FeatureRequest request,
+            Function<IzanamiHttpResponse, Result<T>> responseMapper
     ) {
         var url = url(configuration, request);
         var method = request.getPayload().map(p -> IzanamiHttpRequest.Method.POST).orElse(IzanamiHttpRequest.Method.GET);
@@ -71,6 +115,6 @@ public final class HttpRequester {
         r.timeout = request.getTimeout().orElseGet(() -> configuration.callTimeout);
         r.uri = URI.create(url);
         LOGGER.debug("Calling {}", url);
-        return performCall(configuration, r, ResponseUtils::parseFeatureResponse);
+        return performCall(configuration, r, responseMapper);
     }
 }
@@ -1,28 +1,97 @@
 package fr.maif.http;
 
+import fr.maif.TransportConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 public interface IzanamiHttpClient extends Function<IzanamiHttpRequest, CompletableFuture<IzanamiHttpResponse>> {
     class DefaultIzanamiHttpClient implements IzanamiHttpClient {
         private static final Logger LOGGER = LoggerFactory.getLogger(DefaultIzanamiHttpClient.class);
         public final HttpClient client;
+        private final Duration connectTimeout;
+        private final boolean compression;
 
         public DefaultIzanamiHttpClient() {
-            this.client = HttpClient.newHttpClient();
+            this(TransportConfiguration.defaults());
+        }
+
+        /**
+         * @param transport transport configuration (executor, HTTP version, connect timeout and thread pool size)
+         */
+        public DefaultIzanamiHttpClient(TransportConfiguration transport) {
+            var builder = HttpClient.newBuilder().connectTimeout(transport.connectTimeout);
+            transport.httpVersion.ifPresent(builder::version);
+            transport.executor
+                    .or(() -> transport.threadPoolSize > 0 ? Optional.of(newExecutor("izanami-http", transport.threadPoolSize)) : Optional.empty())
+                    .ifPresent(builder::executor);
+            this.client = builder.build();
+            this.connectTimeout = transport.connectTimeout;
+            this.compression = transport.compression;
+        }
+
+        /**
+         * Create a pool of daemon threads that stop when idle, so that a discarded client doesn't retain them.
+         * @param name thread name prefix
+         * @param size number of threads
+         * @return created executor
+         */
+        public static ThreadPoolExecutor newExecutor(String name, int size) {
+            var count = new AtomicInteger();
+            var executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                var thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        /**
+         * Open a connection to given URI, so that following requests to the same host can reuse it.
+         * @param uri URI to send a HEAD request to, its response is ignored
+         * @return a CompletableFuture that completes once connection is opened, or failed to open
+         */
+        public CompletableFuture<Void> prewarm(URI uri) {
+            var request = HttpRequest.newBuilder(uri)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .timeout(connectTimeout)
+                    .build();
+            return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (Objects.nonNull(error)) {
+                            LOGGER.warn("Failed to open connection to {}: {}", uri, error.getMessage());
+                        } else {
+                            LOGGER.debug("Opened connection to {} (status is {})", uri, response.statusCode());
+                        }
+                        return null;
+                    });
         }
 
         @Override
         public CompletableFuture<IzanamiHttpResponse> apply(IzanamiHttpRequest request) {
             var requestBuilder = HttpRequest.newBuilder().timeout(request.timeout);
             request.headers.forEach(requestBuilder::setHeader);
+            if (compression) {
+                requestBuilder.setHeader("Accept-Encoding", ContentEncoding.ACCEPTED);
+            }
 
             var r = requestBuilder.uri(request.uri);
             if(request.method == IzanamiHttpRequest.Method.GET) {
@@ -31,13 +100,27 @@ public interface IzanamiHttpClient extends Function<IzanamiHttpRequest, Completa
                 r.POST(HttpRequest.BodyPublishers.ofString(request.body.orElse("")));
             }
 
-            return client.sendAsync(r.build(), HttpResponse.BodyHandlers.ofString())
+            return client.sendAsync(r.build(), HttpResponse.BodyHandlers.ofByteArray())
                     .thenApply(response -> {
-                        LOGGER.debug("Response for {} : {} (status is {})", request.uri, response.body(), response.statusCode());
+                        if (ContentEncoding.isCompressed(response.headers())) {
+                            LOGGER.debug("Compressed response for {} : {} bytes (status is {})", request.uri, response.body().length, response.statusCode());
+                            try {
+                                // Body is inflated while being read: feature responses stream into the parser, cache refreshes
+                                // still read it entirely since they digest it
+                                return new IzanamiHttpResponse(ContentEncoding.decode(response.headers(), new ByteArrayInputStream(response.body())), response.statusCode());
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("Response for {} : {} (status is {})", request.uri, new String(response.body(), StandardCharsets.UTF_8), response.statusCode());
+                        }
                         return new IzanamiHttpResponse(response.body(), response.statusCode());
                     }).whenComplete((resp, ex) -> {
                         if(Objects.nonNull(ex)) {
-                            LOGGER.error("Failed to perform http request", ex);
+                            // failures are frequent during an outage, stack trace is only logged in debug
+                            LOGGER.error("Failed to perform http request to {} : {}", request.uri, ex.toString());
+                            LOGGER.debug("Http request failure", ex);
                         }
                     });
         }
@@ -1,11 +1,86 @@
 package fr.maif.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Response of remote Izanami. Body is either a String (historical representation), a byte array or a stream,
+ * only the first two can be read several times. Byte array and stream bodies are parsed without being copied
+ * to a String, {@link IzanamiHttpResponse#body} is null for them.
+ */
 public class IzanamiHttpResponse {
     public String body;
     public int status;
+    byte[] bytes;
+    InputStream stream;
 
     public IzanamiHttpResponse(String body, int status) {
         this.body = body;
         this.status = status;
     }
-}
\ No newline at end of file
+
+    /**
+     * @param body UTF-8 encoded response body
+     * @param status response status code
+     */
+    public IzanamiHttpResponse(byte[] body, int status) {
+        this.bytes = body;
+        this.status = status;
+    }
+
+    /**
+     * @param body UTF-8 encoded response body, closed once read
+     * @param status response status code
+     */
+    public IzanamiHttpResponse(InputStream body, int status) {
+        this.stream = body;
+        this.status = status;
+    }
+
+    /**
+     * @return response body, decoded (and read, for stream bodies) if it isn't a String
+     */
+    public String bodyAsString() {
+        if (Objects.isNull(body) && (Objects.nonNull(bytes) || Objects.nonNull(stream))) {
+            return new String(bodyAsBytes(), StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    /**
+     * @return response body as UTF-8 encoded bytes, stream bodies are read entirely
+     */
+    public byte[] bodyAsBytes() {
+        if (Objects.isNull(bytes)) {
+            if (Objects.nonNull(stream)) {
+                try (InputStream in = stream) {
+                    bytes = in.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    stream = null;
+                }
+            } else if (Objects.nonNull(body)) {
+                return body.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return response body as a stream of UTF-8 encoded bytes, a stream body can be read only once
+     */
+    public InputStream bodyAsStream() {
+        if (Objects.nonNull(stream)) {
+            InputStream result = stream;
+            stream = null;
+            return result;
+        }
+        byte[] content = bodyAsBytes();
+        return Objects.isNull(content) ? null : new ByteArrayInputStream(content);
+    }
+}
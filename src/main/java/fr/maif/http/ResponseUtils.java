@@ -1,6 +1,8 @@
 package fr.maif.http;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -28,8 +30,12 @@ import fr.maif.features.values.StringValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -66,21 +72,92 @@ public final class ResponseUtils {
 
     public static Result<Map<String, Feature>> parseFeatureResponse(String json) {
         try {
-            return Optional.ofNullable(mapper.readValue(json, new TypeReference<Map<String, ObjectNode>>() {}))
-                    .map(map -> map.entrySet().stream()
-                            .map(entry -> ResponseUtils.parseFeature(entry.getKey(), entry.getValue()))
-                            .filter(Optional::isPresent)
-                            .map(Optional::get)
-                            .collect(Collectors.toMap(f -> f.id, f -> f)))
-                    .map(Result::new)
-                    .orElseGet(() -> new Result<>("Failed to parse response"));
-        } catch (JsonMappingException e) {
-            return new Result<>("Unexpected format received from Izanami: " + json);
-        } catch (JsonProcessingException e) {
+            return parseFeatureResponse(mapper.createParser(json), () -> json);
+        } catch (IOException e) {
             return new Result<>("Invalid JSON received from Izanami: " + json);
         }
     }
 
+    /**
+     * Parse features from given response, using the representation its body was received in.
+     * @param response Izanami response
+     * @return parsed features by id
+     */
+    public static Result<Map<String, Feature>> parseFeatureResponse(IzanamiHttpResponse response) {
+        if (Objects.nonNull(response.body)) {
+            return parseFeatureResponse(response.body);
+        } else if (Objects.nonNull(response.bytes)) {
+            return parseFeatureResponse(response.bytes);
+        } else if (Objects.nonNull(response.stream)) {
+            return parseFeatureResponse(response.bodyAsStream());
+        }
+        return new Result<>("Failed to parse response");
+    }
+
+    /**
+     * Parse features one by one from UTF-8 encoded response, without decoding it to a String.
+     * @param json UTF-8 encoded response body
+     * @return parsed features by id
+     */
+    public static Result<Map<String, Feature>> parseFeatureResponse(byte[] json) {
+        try {
+            return parseFeatureResponse(mapper.createParser(json), () -> new String(json, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return new Result<>("Invalid JSON received from Izanami: " + new String(json, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Parse features one by one while reading given stream, which is closed afterward.
+     * @param json UTF-8 encoded response body
+     * @return parsed features by id
+     */
+    public static Result<Map<String, Feature>> parseFeatureResponse(InputStream json) {
+        try {
+            return parseFeatureResponse(mapper.createParser(json), () -> "(streamed response)");
+        } catch (IOException e) {
+            return new Result<>("Failed to read response from Izanami: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param json already parsed response, such as SSE event payload
+     * @return parsed features by id
+     */
+    public static Result<Map<String, Feature>> parseFeatureResponse(JsonNode json) {
+        return parseFeatureResponse(mapper.treeAsTokens(json), json::toString);
+    }
+
+    /**
+     * Read features from given parser one at a time, only one feature JSON tree is built at once.
+     */
+    private static Result<Map<String, Feature>> parseFeatureResponse(JsonParser parser, Supplier<String> content) {
+        try (parser) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return new Result<>("Failed to parse response");
+            } else if (token != JsonToken.START_OBJECT) {
+                return new Result<>("Unexpected format received from Izanami: " + content.get());
+            }
+            Map<String, Feature> features = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String id = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT) {
+                    ObjectNode node = parser.readValueAsTree();
+                    parseFeature(id, node).ifPresent(feature -> features.put(feature.id, feature));
+                } else if (value != JsonToken.VALUE_NULL) {
+                    return new Result<>("Unexpected format received from Izanami: " + content.get());
+                }
+            }
+            return new Result<>(features);
+        } catch (JsonProcessingException e) {
+            return new Result<>("Invalid JSON received from Izanami: " + content.get());
+        } catch (IOException e) {
+            return new Result<>("Failed to read response from Izanami: " + e.getMessage());
+        }
+    }
+
 
     public static Optional<Feature> parseFeature(String id, ObjectNode json) {
         if (json.isNull()) {
@@ -88,7 +165,7 @@ public final class ResponseUtils {
         }
 
         String name = json.get("name").asText();
-        String project = json.get("project").asText();
+        String project = Interner.string(json.get("project").asText());
         JsonNode activeNode = json.get("active");
         String type = "unknown";
         if (activeNode.isNumber()) {
@@ -143,7 +220,7 @@ public final class ResponseUtils {
                             .map(entry -> {
                                 var overloadJson = entry.getValue();
                                 return parseNumberFeatureOverload(overloadJson)
-                                        .map(overload -> new AbstractMap.SimpleEntry<>(entry.getKey(), overload));
+                                        .map(overload -> new AbstractMap.SimpleEntry<>(Interner.string(entry.getKey()), overload));
                             }).filter(Optional::isPresent)
                             .map(Optional::get)
                             .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
@@ -161,7 +238,7 @@ public final class ResponseUtils {
                 );
             }
             case "string": {
-                String active = json.get("active").isNull() ? null : json.get("active").asText();
+                String active = json.get("active").isNull() ? null : Interner.string(json.get("active").asText());
                 ObjectNode conditions = (ObjectNode) json.get("conditions");
                 Map<String, FeatureOverload<StringValue>> overloads = new HashMap<>();
                 try {
@@ -171,7 +248,7 @@ public final class ResponseUtils {
                             .map(entry -> {
                                 var overloadJson = entry.getValue();
                                 return parseStringFeatureOverload(overloadJson)
-                                        .map(overload -> new AbstractMap.SimpleEntry<>(entry.getKey(), overload));
+                                        .map(overload -> new AbstractMap.SimpleEntry<>(Interner.string(entry.getKey()), overload));
                             }).filter(Optional::isPresent)
                             .map(Optional::get)
                             .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
@@ -199,7 +276,7 @@ public final class ResponseUtils {
                             .map(entry -> {
                                 var overloadJson = entry.getValue();
                                 return parseFeatureOverload(overloadJson)
-                                        .map(overload -> new AbstractMap.SimpleEntry<>(entry.getKey(), overload));
+                                        .map(overload -> new AbstractMap.SimpleEntry<>(Interner.string(entry.getKey()), overload));
                             }).filter(Optional::isPresent)
                             .map(Optional::get)
                             .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
@@ -231,11 +308,11 @@ public final class ResponseUtils {
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .collect(Collectors.toList());
-            return Optional.of(new ClassicalOverload(enabled, conditions));
+            return Optional.of(FeatureOverload.shared(new ClassicalOverload(enabled, conditions)));
         } else if (node.has("wasmConfig") && !node.get("wasmConfig").isNull()) {
             String name = node.get("wasmConfig").get("name").asText();
 
-            return Optional.of(new WasmFeatureOverload<BooleanValue>(enabled, new FeatureOverload.WasmConfig(name)));
+            return Optional.of(FeatureOverload.shared(new WasmFeatureOverload<BooleanValue>(enabled, new FeatureOverload.WasmConfig(name))));
         } else {
             LOGGER.error("Failed to parse feature overload " + node);
             return Optional.empty();
@@ -252,11 +329,11 @@ public final class ResponseUtils {
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .collect(Collectors.toList());
-            return Optional.of(new StringOverload(enabled, conditions, node.get("value").asText()));
+            return Optional.of(FeatureOverload.shared(new StringOverload(enabled, conditions, Interner.string(node.get("value").asText()))));
         } else if (node.has("wasmConfig") && !node.get("wasConfig").isNull()) {
             String name = node.get("wasmConfig").get("name").asText();
 
-            return Optional.of(new WasmFeatureOverload<StringValue>(enabled, new FeatureOverload.WasmConfig(name)));
+            return Optional.of(FeatureOverload.shared(new WasmFeatureOverload<StringValue>(enabled, new FeatureOverload.WasmConfig(name))));
         } else {
             LOGGER.error("Failed to parse feature overload " + node);
             return Optional.empty();
@@ -272,11 +349,11 @@ public final class ResponseUtils {
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .collect(Collectors.toList());
-            return Optional.of(new NumberOverload(enabled, conditions, node.get("value").decimalValue()));
+            return Optional.of(FeatureOverload.shared(new NumberOverload(enabled, conditions, node.get("value").decimalValue())));
         } else if (node.has("wasmConfig") && !node.get("wasmConfig").isNull()) {
             String name = node.get("wasmConfig").get("name").asText();
 
-            return Optional.of(new WasmFeatureOverload<NumberValue>(enabled, new FeatureOverload.WasmConfig(name)));
+            return Optional.of(FeatureOverload.shared(new WasmFeatureOverload<NumberValue>(enabled, new FeatureOverload.WasmConfig(name))));
         } else {
             LOGGER.error("Failed to parse feature overload " + node);
             return Optional.empty();
@@ -284,6 +361,10 @@ public final class ResponseUtils {
     }
 
     static Optional<ActivationCondition> parseActivationCondition(JsonNode json) {
+        return parseUnsharedActivationCondition(json).map(ActivationCondition::shared);
+    }
+
+    private static Optional<ActivationCondition> parseUnsharedActivationCondition(JsonNode json) {
         if (json.isNull()) {
             return Optional.empty();
         }
@@ -301,8 +382,8 @@ public final class ResponseUtils {
             return Optional.empty();
         }
 
-        return parseActivationCondition(json)
-                .map(cond -> StringValuedActivationCondition.fromCondition(cond, valueNode.asText()));
+        return parseUnsharedActivationCondition(json)
+                .map(cond -> ActivationCondition.shared(StringValuedActivationCondition.fromCondition(cond, Interner.string(valueNode.asText()))));
 
     }
 
@@ -313,8 +394,8 @@ public final class ResponseUtils {
             return Optional.empty();
         }
 
-        return parseActivationCondition(json)
-                .map(cond -> NumberValuedActivationCondition.fromCondition(cond, valueNode.decimalValue()));
+        return parseUnsharedActivationCondition(json)
+                .map(cond -> ActivationCondition.shared(NumberValuedActivationCondition.fromCondition(cond, valueNode.decimalValue())));
 
     }
 
@@ -323,7 +404,7 @@ public final class ResponseUtils {
             return Optional.empty();
         }
         try {
-            return Optional.ofNullable(mapper.readValue(node.toPrettyString(), FeaturePeriod.class));
+            return Optional.ofNullable(mapper.readValue(node.toPrettyString(), FeaturePeriod.class)).map(FeaturePeriod::shared);
         } catch (JsonProcessingException e) {
             return Optional.empty();
         }
@@ -347,10 +428,10 @@ public final class ResponseUtils {
             return Optional.empty();
         }
 
-        Set<String> users = StreamSupport.stream(node.get("users").spliterator(), false)
-                .map(JsonNode::asText).collect(Collectors.toSet());
+        List<String> users = StreamSupport.stream(node.get("users").spliterator(), false)
+                .map(JsonNode::asText).collect(Collectors.toList());
 
-        return Optional.of(new UserList(users));
+        return Optional.of(UserList.shared(CompactUserSet.shared(users)));
     }
 
     static Optional<UserPercentage> parseUserPercentage(JsonNode node) {
@@ -0,0 +1,105 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import fr.maif.ClientConfiguration;
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.Feature;
+import fr.maif.http.HttpRequester;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache loader that reloads features in background, used for stale-while-revalidate refresh.
+ * Reloads requested within configured window are grouped in a single remote call.
+ * A feature absent from Izanami response is removed from cache, a failed reload keeps serving previous definition.
+ * Load statistics are recorded by the cache itself.
+ */
+final class BatchingFeatureLoader implements CacheLoader<String, Feature<?>> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingFeatureLoader.class);
+
+    private final ClientConfiguration configuration;
+    private final Duration batchWindow;
+    private final int maximumBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private Map<String, CompletableFuture<Feature<?>>> pending = new HashMap<>();
+
+    BatchingFeatureLoader(ClientConfiguration configuration, ScheduledExecutorService scheduler) {
+        this.configuration = configuration;
+        this.batchWindow = configuration.cacheConfiguration.reloadBatchWindow;
+        this.maximumBatchSize = configuration.cacheConfiguration.reloadBatchMaximumSize;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Feature<?> load(String key) {
+        return asyncLoad(key, Runnable::run).join();
+    }
+
+    @Override
+    public CompletableFuture<? extends Feature<?>> asyncLoad(String key, Executor executor) {
+        Map<String, CompletableFuture<Feature<?>>> batch = null;
+        CompletableFuture<Feature<?>> future;
+        synchronized (this) {
+            future = pending.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                pending.put(key, future);
+                if (pending.size() >= maximumBatchSize) {
+                    batch = pending;
+                    pending = new HashMap<>();
+                } else if (pending.size() == 1) {
+                    scheduler.schedule(this::flush, batchWindow.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<? extends Feature<?>> asyncReload(String key, Feature<?> oldValue, Executor executor) {
+        return asyncLoad(key, executor);
+    }
+
+    private void flush() {
+        Map<String, CompletableFuture<Feature<?>>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(Map<String, CompletableFuture<Feature<?>>> batch) {
+        Set<String> ids = batch.keySet();
+        LOGGER.debug("Reloading {} features in background", ids.size());
+        HttpRequester.performRequest(configuration, FeatureRequest.newFeatureRequest().withFeatures(ids))
+                .whenComplete((result, error) -> {
+                    if (error != null || result.isError()) {
+                        var exception = error != null
+                                ? error
+                                : new IzanamiException("Failed to reload features : " + result.error.get());
+                        // stack trace is only logged in debug, like other remote failures
+                        LOGGER.warn("Failed to reload features in background, stale values are kept : {}", exception.toString());
+                        LOGGER.debug("Background reload failure", exception);
+                        batch.values().forEach(future -> future.completeExceptionally(exception));
+                    } else {
+                        Map<String, Feature> features = result.value;
+                        batch.forEach((id, future) -> future.complete(features.get(id)));
+                    }
+                });
+    }
+}
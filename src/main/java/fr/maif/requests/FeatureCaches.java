@@ -0,0 +1,90 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.features.Feature;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Feature cache creation, shared by feature services.
+ */
+final class FeatureCaches {
+    private FeatureCaches() {
+    }
+
+    /**
+     * Build a feature cache, bounded according to given configuration. Pinned features have a zero weight,
+     * therefore they are never evicted and don't count in cache bounds.
+     * @param configuration cache configuration
+     * @param pinned predicate indicating whether a feature id must stay in cache, evaluated when feature is stored
+     * @param stats counter recording cache statistics
+     * @return a new cache
+     */
+    static Cache<String, Feature<?>> newCache(FeatureCacheConfiguration configuration, Predicate<String> pinned, StatsCounter stats) {
+        return newCache(configuration, pinned, stats, null);
+    }
+
+    /**
+     * Build a feature cache, bounded according to given configuration. Pinned features have a zero weight,
+     * therefore they are never evicted and don't count in cache bounds.
+     * If stale-while-revalidate is configured and a loader is provided, features are reloaded in background with it.
+     * @param configuration cache configuration
+     * @param pinned predicate indicating whether a feature id must stay in cache, evaluated when feature is stored
+     * @param stats counter recording cache statistics
+     * @param loader loader used to reload features, may be null
+     * @return a new cache
+     */
+    static Cache<String, Feature<?>> newCache(FeatureCacheConfiguration configuration, Predicate<String> pinned, StatsCounter stats, CacheLoader<String, Feature<?>> loader) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats(() -> stats);
+        boolean reload = Objects.nonNull(loader) && configuration.refreshAfterWrite.isPresent();
+        if (reload) {
+            builder = builder
+                    .refreshAfterWrite(configuration.refreshAfterWrite.get())
+                    .expireAfterWrite(configuration.expireAfterWrite.get());
+        }
+        Caffeine<String, Feature<?>> bounded;
+        if (configuration.maximumWeight > 0) {
+            bounded = builder
+                    .maximumWeight(configuration.maximumWeight)
+                    .weigher((String id, Feature<?> feature) -> pinned.test(id) ? 0 : (int) Math.min(Integer.MAX_VALUE, feature.estimatedSize()));
+        } else if (configuration.maximumSize > 0) {
+            bounded = builder
+                    .maximumWeight(configuration.maximumSize)
+                    .weigher((String id, Feature<?> feature) -> pinned.test(id) ? 0 : 1);
+        } else {
+            return reload ? builder.build(loader) : builder.build();
+        }
+        return reload ? bounded.build(loader) : bounded.build();
+    }
+
+    /**
+     * Replace cache content with a fresh state of given features. New definitions are stored first, then features
+     * absent from the fresh state are removed, therefore concurrent readers never see a refreshed feature missing,
+     * and features stored in between are kept.
+     * @param cache cache to update
+     * @param expectedIds ids of features that were requested to build fresh state
+     * @param features fresh state of features, by id
+     * @return ids of removed features
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static Set<String> applySnapshot(Cache<String, Feature<?>> cache, Collection<String> expectedIds, Map<String, Feature> features) {
+        cache.putAll((Map) features);
+        Set<String> removed = new HashSet<>();
+        for (String id : expectedIds) {
+            if (!features.containsKey(id)) {
+                removed.add(id);
+            }
+        }
+        cache.invalidateAll(removed);
+        return removed;
+    }
+}
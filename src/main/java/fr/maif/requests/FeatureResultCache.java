@@ -0,0 +1,208 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.maif.features.Feature;
+import fr.maif.features.values.FeatureValue;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded memoization of feature evaluation results, by feature, context and user.
+ * Results of time independent features can't change until feature definition changes, results of time dependent
+ * features are kept until next period transition (see {@link Feature#nextTransition(String, long)}), at which
+ * instant they are evicted. Entries are bound to the feature instance they were computed from, therefore a replaced
+ * feature never serves stale results, even before its entries are invalidated.
+ * Keys are indexed by feature id, so that invalidating a feature doesn't scan every memoized result.
+ */
+final class FeatureResultCache {
+    /**
+     * Marker for null results (disabled valued features), empty results (script features) are never memoized.
+     */
+    private static final Optional<FeatureValue> NULL_RESULT = Optional.empty();
+
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentHashMap<String, Set<Key>> keysByFeature = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    FeatureResultCache(long maximumSize) {
+        this.cache = maximumSize > 0
+                ? Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfter(new TransitionExpiry())
+                    .evictionListener((Key key, Entry entry, RemovalCause cause) -> unindex(key))
+                    .scheduler(Scheduler.systemScheduler())
+                    .recordStats()
+                    .build()
+                : null;
+    }
+
+    /**
+     * Evaluate given feature, using memoized result if any
+     * @return same result as {@link Feature#value(String, String, long)}
+     */
+    @SuppressWarnings("unchecked")
+    Optional<FeatureValue> value(Feature<?> feature, String context, String user, long now) {
+        if (Objects.isNull(cache)) {
+            return (Optional<FeatureValue>) feature.value(context, user, now);
+        }
+        var key = new Key(feature, context, user);
+        Entry entry = cache.asMap().get(key);
+        // Evaluation instant comes from client clock, that may not match cache clock
+        if (Objects.nonNull(entry) && now >= entry.computedAt && now < entry.validUntil) {
+            hits.increment();
+            return entry.result == NULL_RESULT ? null : (Optional<FeatureValue>) entry.result;
+        }
+        misses.increment();
+        Optional<? extends FeatureValue> result = feature.value(context, user, now);
+        if (Objects.isNull(result)) {
+            index(key);
+            cache.put(key, new Entry(NULL_RESULT, now, feature.nextTransition(context, now)));
+        } else if (result.isPresent()) {
+            index(key);
+            cache.put(key, new Entry(result, now, feature.nextTransition(context, now)));
+        }
+        return (Optional<FeatureValue>) result;
+    }
+
+    /**
+     * Drop results memoized for given feature
+     * @param id feature id
+     */
+    void invalidate(String id) {
+        if (Objects.nonNull(cache)) {
+            Set<Key> keys = keysByFeature.remove(id);
+            if (Objects.nonNull(keys)) {
+                cache.invalidateAll(keys);
+            }
+        }
+    }
+
+    /**
+     * Drop results memoized for given features
+     * @param ids feature ids
+     */
+    void invalidateAll(Set<String> ids) {
+        if (Objects.nonNull(cache)) {
+            ids.forEach(this::invalidate);
+        }
+    }
+
+    void invalidateAll() {
+        if (Objects.nonNull(cache)) {
+            keysByFeature.clear();
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Index key before caching its entry, so that an entry evicted right away is unindexed too.
+     * Index sets are only modified while mapped, under map lock of their feature id.
+     */
+    private void index(Key key) {
+        keysByFeature.compute(key.feature.id, (id, keys) -> {
+            Set<Key> result = Objects.isNull(keys) ? new HashSet<>() : keys;
+            result.add(key);
+            return result;
+        });
+    }
+
+    private void unindex(Key key) {
+        keysByFeature.computeIfPresent(key.feature.id, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * @return number of indexed keys
+     */
+    int indexedKeys() {
+        return keysByFeature.values().stream().mapToInt(Set::size).sum();
+    }
+
+    CacheStats stats() {
+        if (Objects.isNull(cache)) {
+            return CacheStats.empty();
+        }
+        CacheStats stats = cache.stats();
+        return CacheStats.of(hits.sum(), misses.sum(), 0L, 0L, 0L, stats.evictionCount(), stats.evictionWeight());
+    }
+
+    private static final class Entry {
+        private final Optional<? extends FeatureValue> result;
+        private final long computedAt;
+        private final long validUntil;
+
+        private Entry(Optional<? extends FeatureValue> result, long computedAt, long validUntil) {
+            this.result = result;
+            this.computedAt = computedAt;
+            this.validUntil = validUntil;
+        }
+    }
+
+    /**
+     * Evict entries at their feature next transition, so that time dependent results are recomputed once
+     */
+    private static final class TransitionExpiry implements Expiry<Key, Entry> {
+        @Override
+        public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+            if (entry.validUntil == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, entry.validUntil - entry.computedAt));
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static final class Key {
+        private final Feature<?> feature;
+        private final String context;
+        private final String user;
+        private final int hash;
+
+        private Key(Feature<?> feature, String context, String user) {
+            this.feature = feature;
+            this.context = context;
+            this.user = user;
+            this.hash = 31 * (31 * System.identityHashCode(feature) + Objects.hashCode(context)) + Objects.hashCode(user);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            var other = (Key) o;
+            return feature == other.feature && Objects.equals(context, other.context) && Objects.equals(user, other.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
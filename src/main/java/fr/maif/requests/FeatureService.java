@@ -1,17 +1,126 @@
 package fr.maif.requests;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.maif.CircuitBreakerConfiguration;
 import fr.maif.ClientConfiguration;
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.Feature;
+import fr.maif.features.results.EvaluationSnapshot;
 import fr.maif.features.results.IzanamiResult;
+import fr.maif.http.CircuitBreaker;
+import fr.maif.http.CircuitBreakingHttpClient;
 
 public interface FeatureService {
+    /**
+     * Retrieve service shared by every client of this JVM with the same connection information, cache, clock,
+     * transport, HTTP client and circuit breaker settings, creating it with given factory if there is none.
+     * Factory is responsible for creating HTTP client and circuit breaker, so that they exist only once per shared
+     * service. Shared service is disconnected when every service returned for it is disconnected.
+     * @param configuration settings of the client acquiring the service
+     * @param circuitBreakerConfiguration circuit breaker settings of the client acquiring the service, if any
+     * @param idsToPreload ids of features to preload, used only if service is created
+     * @param factory function creating a new service from given settings
+     * @return a service dedicated to the client, backed by the shared one
+     */
+    static FeatureService shared(
+            ClientConfiguration configuration,
+            Optional<CircuitBreakerConfiguration> circuitBreakerConfiguration,
+            Set<String> idsToPreload,
+            BiFunction<ClientConfiguration, Set<String>, FeatureService> factory
+    ) {
+        return SharedFeatureServices.acquire(configuration, circuitBreakerConfiguration, idsToPreload, factory);
+    }
+
     ClientConfiguration configuration();
     CompletableFuture<Void> disconnect();
 
+    /**
+     * @return features currently stored in local cache
+     */
+    Collection<Feature<?>> cachedFeatures();
+
+    /**
+     * @param id feature id
+     * @return feature stored in local cache for given id, if any
+     */
+    Optional<Feature<?>> cachedFeature(String id);
+
+    /**
+     * @return statistics of feature cache (hits, misses, evictions, remote load time)
+     */
+    default CacheStats cacheStats() {
+        return CacheStats.empty();
+    }
+
+    /**
+     * @return hit / miss statistics of evaluation result memoization, empty if memoization is disabled
+     */
+    default CacheStats resultCacheStats() {
+        return CacheStats.empty();
+    }
+
+    /**
+     * @return number of feature retrievals that joined an identical pending remote call instead of performing their own
+     */
+    default long deduplicatedRequestCount() {
+        return 0L;
+    }
+
+    /**
+     * @return number of lookups answered from negative cache, for features known to be missing from remote Izanami
+     */
+    default long negativeCacheHitCount() {
+        return 0L;
+    }
+
+    /**
+     * @return circuit breaker guarding calls to remote Izanami, if any
+     */
+    default Optional<CircuitBreaker> circuitBreaker() {
+        return Optional.of(configuration().httpClient)
+                .filter(CircuitBreakingHttpClient.class::isInstance)
+                .map(client -> ((CircuitBreakingHttpClient) client).circuitBreaker);
+    }
+
+    /**
+     * Retrieve feature definition, from cache if possible or from remote Izanami otherwise.
+     * @param id feature id
+     * @return a CompletableFuture containing feature definition, or failed with an IzanamiException if feature can't be retrieved
+     */
+    default CompletableFuture<Feature<?>> loadFeature(String id) {
+        return cachedFeature(id)
+                .map(CompletableFuture::<Feature<?>>completedFuture)
+                .orElseGet(() -> featureValues(FeatureRequest.newFeatureRequest().withFeatures(id))
+                        .thenApply(useless -> cachedFeature(id)
+                                .orElseThrow(() -> new IzanamiException("Failed to retrieve feature " + id))));
+    }
+
+    /**
+     * Evaluate locally every cached feature, without calling remote Izanami.
+     * @param user user to evaluate features for
+     * @param context context to evaluate features for
+     * @param project if present, only features of this project are evaluated
+     * @return values of cached features that can be evaluated locally
+     */
+    default EvaluationSnapshot evaluateAll(String user, String context, Optional<String> project) {
+        Collection<Feature<?>> features = cachedFeatures();
+        if (project.isPresent()) {
+            String projectName = project.get();
+            features = features.stream().filter(f -> projectName.equals(f.project)).collect(Collectors.toList());
+        }
+        return EvaluationSnapshot.evaluate(features, context, user, configuration().clock.millis(), configuration().castStrategy);
+    }
+
     @Deprecated
     default CompletableFuture<Map<String, Boolean>> featureStates(
             FeatureRequest request
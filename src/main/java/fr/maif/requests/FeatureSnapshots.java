@@ -0,0 +1,59 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.Feature;
+import fr.maif.features.FeatureSnapshotFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loading and saving of feature cache to configured snapshot file, shared by feature services.
+ * Snapshot failures are logged and never prevent client from working.
+ */
+final class FeatureSnapshots {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeatureSnapshots.class);
+
+    private FeatureSnapshots() {
+    }
+
+    /**
+     * Fill cache with features of snapshot file, if any.
+     * @return ids of loaded features
+     */
+    static Set<String> load(FeatureCacheConfiguration configuration, Cache<String, Feature<?>> cache) {
+        if (configuration.snapshotFile.isEmpty()) {
+            return Set.of();
+        }
+        Path file = configuration.snapshotFile.get();
+        try {
+            long start = System.nanoTime();
+            Map<String, Feature<?>> features = FeatureSnapshotFile.read(file);
+            cache.putAll(features);
+            LOGGER.info("Loaded {} features from snapshot {} in {}ms", features.size(), file, (System.nanoTime() - start) / 1_000_000L);
+            return Set.copyOf(features.keySet());
+        } catch (IzanamiException e) {
+            LOGGER.warn("Failed to load feature snapshot {}, starting with an empty cache", file, e);
+            return Set.of();
+        }
+    }
+
+    /**
+     * Write cache content to snapshot file, if one is configured.
+     */
+    static void save(FeatureCacheConfiguration configuration, Cache<String, Feature<?>> cache) {
+        configuration.snapshotFile.ifPresent(file -> {
+            try {
+                FeatureSnapshotFile.write(file, cache.asMap().values());
+                LOGGER.debug("Saved feature snapshot {}", file);
+            } catch (IzanamiException e) {
+                LOGGER.warn("Failed to save feature snapshot {}", file, e);
+            }
+        });
+    }
+}
@@ -2,6 +2,10 @@ package fr.maif.requests;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import fr.maif.ClientConfiguration;
 import fr.maif.errors.IzanamiError;
 import fr.maif.features.Feature;
@@ -11,12 +15,15 @@ import fr.maif.features.results.IzanamiResult.Result;
 import fr.maif.features.results.IzanamiResult.Success;
 import fr.maif.features.values.FeatureValue;
 import fr.maif.features.values.NullValue;
+import fr.maif.http.CircuitBreaker;
 import fr.maif.http.HttpRequester;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static fr.maif.requests.FeatureRequest.newFeatureRequest;
@@ -26,49 +33,112 @@ public class FetchFeatureService implements FeatureService {
     protected ClientConfiguration configuration;
     private static final Logger LOGGER = LoggerFactory.getLogger(FetchFeatureService.class);
     private final Cache<String, Feature<?>> cache;
+    private final FeatureResultCache results;
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private final InFlightRequests inFlight = new InFlightRequests();
+    private final Optional<Cache<String, Boolean>> absentFeatures;
+    private final LongAdder absorbedLookups = new LongAdder();
+    private final Optional<SnapshotWriter> snapshotWriter;
+    private final RefreshDigests refreshDigests = new RefreshDigests();
     private final Optional<ScheduledExecutorService> refreshScheduler;
+    private final Function<FeatureRequest, CompletableFuture<fr.maif.http.Result<Map<String, Feature>>>> remote;
 
     public FetchFeatureService(ClientConfiguration configuration) {
+        this(configuration, Collections.emptySet());
+    }
+
+    /**
+     * @param configuration client configuration
+     * @param pinnedFeatures ids of features that must never be evicted from cache, such as preloaded features
+     */
+    public FetchFeatureService(ClientConfiguration configuration, Set<String> pinnedFeatures) {
         this.configuration = configuration;
-        this.cache = Caffeine.newBuilder()
-                .build();
+        Set<String> pinned = Set.copyOf(pinnedFeatures);
+        this.results = new FeatureResultCache(configuration.cacheConfiguration.resultCacheMaximumSize);
 
 
-        if(configuration.cacheConfiguration.enabled) {
-            var scheduler = Executors.newScheduledThreadPool(1);
-            scheduler.scheduleAtFixedRate(
-                    this::refreshCache,
-                    0,
-                    configuration.cacheConfiguration.refreshInterval.getSeconds(), TimeUnit.SECONDS
-            );
-            refreshScheduler = Optional.of(scheduler);
+        var cacheConfiguration = configuration.cacheConfiguration;
+        boolean staleWhileRevalidate = cacheConfiguration.enabled && cacheConfiguration.refreshAfterWrite.isPresent();
+        ScheduledExecutorService scheduler = null;
+        if(cacheConfiguration.enabled || cacheConfiguration.missBatchWindow.isPresent()) {
+            scheduler = Executors.newScheduledThreadPool(1);
+        }
+        refreshScheduler = Optional.ofNullable(scheduler);
+        absentFeatures = cacheConfiguration.negativeCacheTtl
+                .map(ttl -> Caffeine.newBuilder().expireAfterWrite(ttl).<String, Boolean>build());
+
+        if(staleWhileRevalidate) {
+            var loader = new BatchingFeatureLoader(configuration, scheduler);
+            this.cache = FeatureCaches.newCache(cacheConfiguration, pinned::contains, stats, loader);
         } else {
-            refreshScheduler = Optional.empty();
+            this.cache = FeatureCaches.newCache(cacheConfiguration, pinned::contains, stats);
+        }
+        // when used by SSEFeatureService for script features, snapshot is handled by SSEFeatureService
+        boolean persistent = cacheConfiguration.enabled && !cacheConfiguration.useServerSentEvent;
+        Set<String> restored = persistent ? FeatureSnapshots.load(cacheConfiguration, cache) : Set.of();
+        this.snapshotWriter = persistent ? Optional.of(new SnapshotWriter(cacheConfiguration, cache)) : Optional.empty();
+        if(staleWhileRevalidate && !restored.isEmpty()) {
+            // restored features are served while they are reconciled with remote Izanami
+            ((LoadingCache<String, Feature<?>>) cache).refreshAll(restored);
+        }
+        if(cacheConfiguration.enabled && !staleWhileRevalidate) {
+            new RefreshScheduler(cacheConfiguration, scheduler, this::refreshCache).start();
         }
-    }
 
-    private void putValuesInCache(Map<String, Feature> features) {
-        features.forEach(cache::put);
+        if(cacheConfiguration.missBatchWindow.isPresent()) {
+            var batcher = new MissBatcher(
+                    cacheConfiguration.missBatchWindow.get(),
+                    cacheConfiguration.missBatchMaximumSize,
+                    configuration.callTimeout,
+                    scheduler,
+                    this::performRequest
+            );
+            this.remote = batcher::fetch;
+        } else {
+            this.remote = this::performRequest;
+        }
     }
 
-    private void refreshCache() {
-        Set<String> features = cache.asMap().keySet();
+    private CompletableFuture<RefreshScheduler.Outcome> refreshCache() {
+        Set<String> features = Set.copyOf(cache.asMap().keySet());
         LOGGER.debug("Refreshing cache for {}", String.join(",", features));
         if(features.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(RefreshScheduler.Outcome.UNCHANGED);
         }
         var request = new FeatureRequest().withFeatures(features);
 
-        HttpRequester
-                .performRequest(configuration, request)
-                .thenAccept(result -> {
-                    if(!result.isError()) {
-                        LOGGER.debug("Received following features for cache refresh {}", String.join("," + result.value.entrySet()));
-                        cache.invalidateAll();
-                        putValuesInCache(result.value);
-                    } else {
+        long start = System.nanoTime();
+        // digests need the whole decompressed body, unlike feature fetches which parse it while it's inflated
+        return HttpRequester
+                .performResponseRequest(configuration, request, response -> refreshDigests.parse(features, response.bodyAsBytes(), cache.policy()::getIfPresentQuietly))
+                .thenApply(result -> {
+                    recordLoad(start, !result.isError());
+                    if(result.isError()) {
                         LOGGER.error("Failed to refresh cache : {}", result.error.get());
+                        return RefreshScheduler.Outcome.FAILED;
+                    }
+                    // features missing so far may have been created since, even if refreshed ones didn't change
+                    absentFeatures.ifPresent(Cache::invalidateAll);
+                    if(result.value.isEmpty()) {
+                        LOGGER.debug("Cache refresh response is unchanged");
+                        return RefreshScheduler.Outcome.UNCHANGED;
                     }
+                    Map<String, Feature> refreshed = result.value.get();
+                    LOGGER.debug("Received following features for cache refresh {}", String.join("," + refreshed.entrySet()));
+                    // unchanged features keep their instance, therefore their memoized results stay valid
+                    // refresh reads are quiet, so that cache statistics only reflect feature lookups
+                    Set<String> changed = refreshed.entrySet().stream()
+                            .filter(entry -> cache.policy().getIfPresentQuietly(entry.getKey()) != entry.getValue())
+                            .map(Map.Entry::getKey)
+                            .collect(Collectors.toCollection(HashSet::new));
+                    var removed = FeatureCaches.applySnapshot(cache, features, refreshed);
+                    changed.addAll(removed);
+                    results.invalidateAll(changed);
+                    if(changed.isEmpty()) {
+                        return RefreshScheduler.Outcome.UNCHANGED;
+                    }
+                    snapshotWriter.ifPresent(SnapshotWriter::schedule);
+                    return RefreshScheduler.Outcome.CHANGED;
                 });
     }
 
@@ -77,9 +147,39 @@ public class FetchFeatureService implements FeatureService {
         return configuration;
     }
 
+    @Override
+    public Collection<Feature<?>> cachedFeatures() {
+        return cache.asMap().values();
+    }
+
+    @Override
+    public Optional<Feature<?>> cachedFeature(String id) {
+        return Optional.ofNullable(cache.getIfPresent(id));
+    }
+
+    private void recordLoad(long start, boolean success) {
+        long duration = System.nanoTime() - start;
+        if (success) {
+            stats.recordLoadSuccess(duration);
+        } else {
+            stats.recordLoadFailure(duration);
+        }
+    }
+
+    @Override
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public CacheStats resultCacheStats() {
+        return results.stats();
+    }
+
     @Override
     public CompletableFuture<Void> disconnect() {
         refreshScheduler.ifPresent(ExecutorService::shutdown);
+        snapshotWriter.ifPresent(SnapshotWriter::close);
         return CompletableFuture.completedFuture(null);
     }
 
@@ -87,7 +187,7 @@ public class FetchFeatureService implements FeatureService {
     public CompletableFuture<IzanamiResult> featureValues(FeatureRequest request) {
         LOGGER.debug("Feature activation request for {}", String.join(",", request.features.keySet()));
         Set<SpecificFeatureRequest> missingFeatures = new HashSet<>();
-        Map<String, Result> activation  = new HashMap<>();
+        Map<String, Result> activation  = new ConcurrentHashMap<>();
 
         request.features.values()
                 .forEach(f -> {
@@ -97,11 +197,17 @@ public class FetchFeatureService implements FeatureService {
                         missingFeatures.add(f);
                     } else {
                        Optional<Feature> maybeCachedFeature = Optional.ofNullable(cache.getIfPresent(f.feature));
-                       if(maybeCachedFeature.isEmpty()) {
+                       if(maybeCachedFeature.isEmpty() && isKnownAbsent(f.feature)) {
+                           absorbedLookups.increment();
+                           activation.put(f.feature, fallback(f.feature, request, missingFeatureMessage(f.feature)));
+                       } else if(maybeCachedFeature.isEmpty()) {
                            missingFeatures.add(f);
                        } else {
                            var feature = maybeCachedFeature.get();
-                           Optional<FeatureValue> value =  feature.value(request.context.orElse(null), request.user);
+                           Optional<FeatureValue> value = results.value(feature, request.context.orElse(null), request.user, configuration.clock.millis());
+                           if(Objects.nonNull(value) && value.isEmpty()) {
+                               value = LocalScriptEvaluation.evaluate(configuration, feature, request);
+                           }
                            if(Objects.isNull(value)) {
                                // this is ugly, but we need to differentiate between a feature that is not present and a feature that is present but has null value
                                activation.put(f.feature, new Success(new NullValue()));
@@ -128,77 +234,72 @@ public class FetchFeatureService implements FeatureService {
                     .withUser(request.user)
                     .withContext(request.context.orElse(null))
                     .withPayload(request.payload.orElse(null));
-            return HttpRequester.performRequest(configuration, missingRequest)
-                    .thenApply(featureResponse -> {
-                        if(featureResponse.isError()) {
-                            String errorMsg = featureResponse.error.get();
-                            LOGGER.error("Failed to retrieve features : {}", errorMsg);
-                            missingFeatures.forEach(f -> {
-                                var errorStrategy = missingRequest.errorStrategyFor(f.feature).orElseGet(() -> configuration.errorStrategy);
-                                if(!errorStrategy.lastKnownFallbackAllowed) {
-                                    activation.put(f.feature, new Error(errorStrategy, new IzanamiError(errorMsg)));
-                                } else {
-                                    Result res = Optional.ofNullable(cache.getIfPresent(f.feature))
-                                            .flatMap(feat -> feat.value(missingRequest.context.orElse(null), missingRequest.user))
-                                            .map(value -> {
-                                                Result r = new Success(value);
-                                                return r;
-                                            })
-                                            .orElseGet(() -> new Error(errorStrategy, new IzanamiError(errorMsg)));
-
-                                    activation.put(f.feature, res);
-                                }
-                            });
-                        } else {
-                            Map<String, Feature> featuresById = featureResponse.value;
-                            missingFeatures.forEach(f -> {
-                                if(featuresById.containsKey(f.feature)) {
-                                    var feature = featuresById.get(f.feature);
+            var responses = inFlight.fetch(missingRequest, remote);
+            var features = missingFeatures.stream()
+                    .map(f -> responses.get(f.feature)
+                            .thenAccept(featureResponse -> {
+                                if(featureResponse.isError()) {
+                                    activation.put(f.feature, fallback(f.feature, missingRequest, featureResponse.error.get()));
+                                } else if(featureResponse.value.containsKey(f.feature)) {
+                                    var feature = featureResponse.value.get(f.feature);
                                     cache.put(f.feature, feature);
+                                    absentFeatures.ifPresent(absent -> absent.invalidate(f.feature));
                                     activation.put(f.feature, new Success(feature.active));
                                 } else {
-                                    // TODO deduplicate this
-                                    var errorStrategy = request.errorStrategyFor(f.feature).orElseGet(() -> configuration.errorStrategy);
-                                    String errorMessage = "Missing feature in Izanami response : " + f.feature +". Either this feature has been deleted or your key is not authorized for it.";
-                                    if(!errorStrategy.lastKnownFallbackAllowed) {
-                                        activation.put(f.feature, new Error(errorStrategy, new IzanamiError(errorMessage)));
-                                    } else {
-                                        Result res = Optional.ofNullable(cache.getIfPresent(f.feature))
-                                                .flatMap(feat -> feat.value(request.context.orElse(null), request.user))
-                                                .map(value -> {
-                                                    Result r = new Success(value);
-                                                    return r;
-                                                })
-                                                .orElseGet(() -> new Error(errorStrategy, new IzanamiError(errorMessage)));
-                                        activation.put(f.feature, res);
-                                    }
+                                    absentFeatures.ifPresent(absent -> absent.put(f.feature, Boolean.TRUE));
+                                    activation.put(f.feature, fallback(f.feature, missingRequest, missingFeatureMessage(f.feature)));
                                 }
-                            });
-                        }
-                        return new IzanamiResult(activation, request.castStrategy.orElse(configuration.castStrategy), request.errorStrategy.orElse(configuration.errorStrategy));
-                    }).exceptionally(ex -> {
-                        LOGGER.error("Failed to query remote Izanami", ex);
-                        missingFeatures.forEach(f -> {
-                            // TODO deduplicate this
-                            var errorStrategy = request.errorStrategyFor(f.feature).orElseGet(() -> configuration.errorStrategy);
-                            String errorMessage = "Missing feature in Izanami response : " + f.feature +". Either this feature has been deleted or your key is not authorized for it.";
-                            if(!errorStrategy.lastKnownFallbackAllowed) {
-                                activation.put(f.feature, new Error(errorStrategy, new IzanamiError(errorMessage)));
-                            } else {
-                            
-                                Result res = Optional.ofNullable(cache.getIfPresent(f.feature))
-                                .flatMap(feat -> feat.value(request.context.orElse(null), request.user))
-                                    .map(value -> {
-                                        Result r = new Success(value);
-                                        return r;
-                                    })
-                                    .orElseGet(() -> new Error(errorStrategy, new IzanamiError(errorMessage)));
-
-                                activation.put(f.feature, res);
-                            }
-                        });
-                        return new IzanamiResult(activation, request.castStrategy.orElse(configuration.castStrategy), request.errorStrategy.orElse(configuration.errorStrategy));
-                    });
+                            }).exceptionally(ex -> {
+                                activation.put(f.feature, fallback(f.feature, missingRequest, missingFeatureMessage(f.feature)));
+                                return null;
+                            }))
+                    .toArray(CompletableFuture[]::new);
+            return CompletableFuture.allOf(features)
+                    .thenApply(useless -> new IzanamiResult(activation, request.castStrategy.orElse(configuration.castStrategy), request.errorStrategy.orElse(configuration.errorStrategy)));
         }
     }
+
+    private CompletableFuture<fr.maif.http.Result<Map<String, Feature>>> performRequest(FeatureRequest request) {
+        long start = System.nanoTime();
+        return HttpRequester.performRequest(configuration, request)
+                .whenComplete((featureResponse, ex) -> {
+                    recordLoad(start, Objects.isNull(ex) && !featureResponse.isError());
+                    if(Objects.nonNull(ex)) {
+                        LOGGER.error("Failed to query remote Izanami : {}", ex.toString());
+                    } else if(featureResponse.error.filter(CircuitBreaker.REJECTION_MESSAGE::equals).isPresent()) {
+                        LOGGER.debug("Remote Izanami was not queried since circuit breaker is open");
+                    } else if(featureResponse.isError()) {
+                        LOGGER.error("Failed to retrieve features : {}", featureResponse.error.get());
+                    }
+                });
+    }
+
+    private boolean isKnownAbsent(String id) {
+        return absentFeatures.map(absent -> absent.getIfPresent(id) != null).orElse(false);
+    }
+
+    private static String missingFeatureMessage(String feature) {
+        return "Missing feature in Izanami response : " + feature +". Either this feature has been deleted or your key is not authorized for it.";
+    }
+
+    private Result fallback(String id, FeatureRequest request, String errorMessage) {
+        var errorStrategy = request.errorStrategyFor(id).orElseGet(() -> configuration.errorStrategy);
+        if(!errorStrategy.lastKnownFallbackAllowed) {
+            return new Error(errorStrategy, new IzanamiError(errorMessage));
+        }
+        return Optional.ofNullable(cache.getIfPresent(id))
+                .flatMap(feat -> feat.value(request.context.orElse(null), request.user, configuration.clock.millis()))
+                .<Result>map(Success::new)
+                .orElseGet(() -> new Error(errorStrategy, new IzanamiError(errorMessage)));
+    }
+
+    @Override
+    public long negativeCacheHitCount() {
+        return absorbedLookups.sum();
+    }
+
+    @Override
+    public long deduplicatedRequestCount() {
+        return inFlight.deduplicatedCount();
+    }
 }
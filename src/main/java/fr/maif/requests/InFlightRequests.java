@@ -0,0 +1,98 @@
+package fr.maif.requests;
+
+import fr.maif.features.Feature;
+import fr.maif.http.Result;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of pending remote feature retrievals. Concurrent requests for the same feature, with same user, context
+ * and payload, share a single remote call instead of each performing its own.
+ */
+final class InFlightRequests {
+    private final Map<Key, CompletableFuture<Result<Map<String, Feature>>>> pending = new ConcurrentHashMap<>();
+    private final LongAdder deduplicated = new LongAdder();
+
+    /**
+     * Retrieve features of given request, joining pending retrievals when possible. Features that are not
+     * already being retrieved are fetched together with a single call to remote.
+     * @param request request to retrieve features for
+     * @param remote function performing remote call
+     * @return for each requested feature id, a future completed with the remote response it belongs to
+     */
+    Map<String, CompletableFuture<Result<Map<String, Feature>>>> fetch(
+            FeatureRequest request,
+            Function<FeatureRequest, CompletableFuture<Result<Map<String, Feature>>>> remote
+    ) {
+        Map<String, CompletableFuture<Result<Map<String, Feature>>>> futures = new HashMap<>();
+        Map<Key, CompletableFuture<Result<Map<String, Feature>>>> owned = new HashMap<>();
+        for (String id : request.getFeatures()) {
+            var key = new Key(id, request);
+            var future = new CompletableFuture<Result<Map<String, Feature>>>();
+            var existing = pending.putIfAbsent(key, future);
+            if (Objects.isNull(existing)) {
+                owned.put(key, future);
+                futures.put(id, future);
+            } else {
+                deduplicated.increment();
+                futures.put(id, existing);
+            }
+        }
+        if (!owned.isEmpty()) {
+            Set<String> ids = owned.keySet().stream().map(key -> key.feature).collect(Collectors.toSet());
+            CompletableFuture<Result<Map<String, Feature>>> response;
+            try {
+                response = remote.apply(request.copy().clearFeatures().withFeatures(ids));
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((result, error) -> owned.forEach((key, future) -> {
+                pending.remove(key, future);
+                if (Objects.nonNull(error)) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * @return number of feature retrievals that joined an already pending remote call
+     */
+    long deduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    private static final class Key {
+        final String feature;
+        final RequestScope scope;
+
+        Key(String feature, FeatureRequest request) {
+            this.feature = feature;
+            this.scope = RequestScope.of(request);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return feature.equals(key.feature) && scope.equals(key.scope);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * feature.hashCode() + scope.hashCode();
+        }
+    }
+}
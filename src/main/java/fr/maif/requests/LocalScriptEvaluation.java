@@ -0,0 +1,72 @@
+package fr.maif.requests;
+
+import fr.maif.ClientConfiguration;
+import fr.maif.features.Feature;
+import fr.maif.features.FeatureOverload;
+import fr.maif.features.FeatureOverload.WasmFeatureOverload;
+import fr.maif.features.values.BooleanValue;
+import fr.maif.features.values.FeatureValue;
+import fr.maif.features.values.NullValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local evaluation of cached script features, using configured {@link fr.maif.features.ScriptEvaluator}.
+ */
+final class LocalScriptEvaluation {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalScriptEvaluation.class);
+    private static final long WARNING_INTERVAL = Duration.ofMinutes(1L).toNanos();
+    /**
+     * Last failure warning instant (System.nanoTime) by script name, evaluation runs on every flag check
+     */
+    private static final Map<String, Long> LAST_WARNINGS = new ConcurrentHashMap<>();
+
+    private LocalScriptEvaluation() {
+    }
+
+    /**
+     * @return script result, empty if feature should be evaluated by remote Izanami
+     */
+    static Optional<FeatureValue> evaluate(ClientConfiguration configuration, Feature<?> feature, FeatureRequest request) {
+        var evaluator = configuration.cacheConfiguration.scriptEvaluator;
+        if (evaluator.isEmpty()) {
+            return Optional.empty();
+        }
+        String context = request.context.orElse(null);
+        FeatureOverload<?> overload = feature.overload(context);
+        if (!(overload instanceof WasmFeatureOverload)) {
+            return Optional.empty();
+        }
+        if (!overload.enabled) {
+            // like other overloads, disabled script overloads are inactive (or null valued) without running anything
+            return Optional.of(feature instanceof Feature.BooleanFeature ? BooleanValue.FALSE : new NullValue());
+        }
+        var script = ((WasmFeatureOverload<?>) overload).wasmConfig;
+        try {
+            Optional<FeatureValue> result = evaluator.get().evaluate(feature, script, context, request.user, request.payload.orElse(null));
+            return Objects.isNull(result) ? Optional.empty() : result;
+        } catch (RuntimeException e) {
+            if (shouldWarn(script.name)) {
+                LOGGER.warn("Failed to evaluate script {} of feature {} locally, falling back to remote evaluation : {}", script.name, feature.id, e.toString());
+            }
+            LOGGER.debug("Local evaluation failure of script {}", script.name, e);
+            return Optional.empty();
+        }
+    }
+
+    private static boolean shouldWarn(String script) {
+        long now = System.nanoTime();
+        Long last = LAST_WARNINGS.get(script);
+        if (Objects.nonNull(last) && now - last < WARNING_INTERVAL) {
+            return false;
+        }
+        // only one of concurrent failures wins the right to log
+        return Objects.isNull(last) ? LAST_WARNINGS.putIfAbsent(script, now) == null : LAST_WARNINGS.replace(script, last, now);
+    }
+}
@@ -0,0 +1,143 @@
+package fr.maif.requests;
+
+import fr.maif.features.Feature;
+import fr.maif.http.Result;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups remote retrievals of missing features. Requests with the same user, context and payload received during a
+ * short window are sent as a single remote call, whose response is shared by every caller.
+ * A batch is sent early when it reaches its maximum size, and its call timeout is shortened so that no caller waits
+ * longer than its own timeout. Requests whose timeout doesn't exceed the window are not batched.
+ */
+final class MissBatcher {
+    private final Duration window;
+    private final int maximumSize;
+    private final Duration defaultTimeout;
+    private final ScheduledExecutorService scheduler;
+    private final Function<FeatureRequest, CompletableFuture<Result<Map<String, Feature>>>> remote;
+    private final Map<RequestScope, Batch> batches = new HashMap<>();
+
+    /**
+     * @param window duration during which requests are collected before being sent
+     * @param maximumSize number of distinct features that triggers sending a batch before window end
+     * @param defaultTimeout call timeout of requests that don't define one
+     * @param scheduler scheduler used to send batches at window end
+     * @param remote function performing remote call
+     */
+    MissBatcher(
+            Duration window,
+            int maximumSize,
+            Duration defaultTimeout,
+            ScheduledExecutorService scheduler,
+            Function<FeatureRequest, CompletableFuture<Result<Map<String, Feature>>>> remote
+    ) {
+        this.window = window;
+        this.maximumSize = maximumSize;
+        this.defaultTimeout = defaultTimeout;
+        this.scheduler = scheduler;
+        this.remote = remote;
+    }
+
+    /**
+     * @param request request to retrieve features for
+     * @return a future completed with remote response of the batch request was part of
+     */
+    CompletableFuture<Result<Map<String, Feature>>> fetch(FeatureRequest request) {
+        Duration timeout = request.getTimeout().orElse(defaultTimeout);
+        if (timeout.compareTo(window) <= 0) {
+            return remote.apply(request);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        var future = new CompletableFuture<Result<Map<String, Feature>>>();
+        var scope = RequestScope.of(request);
+        Batch ready = null;
+        synchronized (this) {
+            var batch = batches.get(scope);
+            if (Objects.isNull(batch)) {
+                batch = new Batch(request, deadline);
+                batches.put(scope, batch);
+                try {
+                    var scheduled = batch;
+                    scheduler.schedule(() -> flush(scope, scheduled), window.toNanos(), TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // service is shutting down, don't wait for window end
+                    batches.remove(scope);
+                    ready = batch;
+                }
+            }
+            batch.add(request.getFeatures(), deadline, future);
+            if (Objects.isNull(ready) && batch.features.size() >= maximumSize) {
+                batches.remove(scope);
+                ready = batch;
+            }
+        }
+        if (Objects.nonNull(ready)) {
+            send(ready);
+        }
+        return future;
+    }
+
+    private void flush(RequestScope scope, Batch batch) {
+        synchronized (this) {
+            if (!batches.remove(scope, batch)) {
+                return;
+            }
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        long remaining = Math.max(batch.deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(1L));
+        var request = batch.template.copy()
+                .clearFeatures()
+                .withFeatures(batch.features)
+                .withCallTimeout(Duration.ofNanos(remaining));
+        CompletableFuture<Result<Map<String, Feature>>> response;
+        try {
+            response = remote.apply(request);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((result, error) -> batch.futures.forEach(future -> {
+            if (Objects.nonNull(error)) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }));
+    }
+
+    private static final class Batch {
+        final FeatureRequest template;
+        final Set<String> features = new HashSet<>();
+        final List<CompletableFuture<Result<Map<String, Feature>>>> futures = new ArrayList<>();
+        long deadline;
+
+        Batch(FeatureRequest template, long deadline) {
+            this.template = template;
+            this.deadline = deadline;
+        }
+
+        void add(Set<String> ids, long callerDeadline, CompletableFuture<Result<Map<String, Feature>>> future) {
+            features.addAll(ids);
+            futures.add(future);
+            if (callerDeadline - deadline < 0) {
+                deadline = callerDeadline;
+            }
+        }
+    }
+}
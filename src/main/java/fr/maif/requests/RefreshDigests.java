@@ -0,0 +1,92 @@
+package fr.maif.requests;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.Feature;
+import fr.maif.http.ResponseUtils;
+import fr.maif.http.Result;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Digests of last refresh response, used to avoid parsing features again when they didn't change.
+ * A response identical to the previous one for the same features isn't parsed at all, otherwise only features whose
+ * JSON changed are parsed, others are skipped by the tokenizer and keep their current instance.
+ * Refreshes must not run concurrently.
+ */
+final class RefreshDigests {
+    private Set<String> scope = Set.of();
+    private byte[] bodyDigest;
+    private Map<String, byte[]> featureDigests = Map.of();
+
+    /**
+     * @param requested ids of refreshed features
+     * @param body refresh response body
+     * @param current function returning current instance of a feature, or null
+     * @return empty if body is identical to previous refresh body, refreshed features by id otherwise
+     */
+    Result<Optional<Map<String, Feature>>> parse(Set<String> requested, byte[] body, Function<String, Feature<?>> current) {
+        byte[] digest = digest(body, 0, body.length);
+        if (requested.equals(scope) && Arrays.equals(digest, bodyDigest)) {
+            return new Result<>(Optional.empty());
+        }
+
+        Map<String, Feature> features = new HashMap<>();
+        Map<String, byte[]> digests = new HashMap<>();
+        try (JsonParser parser = ResponseUtils.mapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new Result<>("Unexpected format received from Izanami: " + new String(body, StandardCharsets.UTF_8));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String id = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int start = (int) parser.getTokenLocation().getByteOffset();
+                parser.skipChildren();
+                int end = (int) parser.getCurrentLocation().getByteOffset();
+                byte[] featureDigest = digest(body, start, end - start);
+                Feature<?> existing = current.apply(id);
+                if (Objects.nonNull(existing) && Arrays.equals(featureDigest, featureDigests.get(id))) {
+                    features.put(id, existing);
+                    digests.put(id, featureDigest);
+                } else {
+                    var json = (ObjectNode) ResponseUtils.mapper.readTree(body, start, end - start);
+                    ResponseUtils.parseFeature(id, json).ifPresent(feature -> {
+                        features.put(id, feature);
+                        digests.put(id, featureDigest);
+                    });
+                }
+            }
+        } catch (IOException e) {
+            return new Result<>("Invalid JSON received from Izanami: " + new String(body, StandardCharsets.UTF_8));
+        }
+        this.scope = requested;
+        this.bodyDigest = digest;
+        this.featureDigests = digests;
+        return new Result<>(Optional.of(features));
+    }
+
+    private static byte[] digest(byte[] value, int offset, int length) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(value, offset, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IzanamiException(e);
+        }
+    }
+}
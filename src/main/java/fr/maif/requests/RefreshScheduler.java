@@ -0,0 +1,134 @@
+package fr.maif.requests;
+
+import fr.maif.FeatureCacheConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Schedules polling refreshes one after the other, each refresh scheduling the next one once it's done.
+ * Delays are randomized by configured jitter so that clients started together don't refresh together, grow
+ * exponentially while refreshes fail, and optionally adapt to how often refreshes observe changes.
+ */
+final class RefreshScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshScheduler.class);
+    private static final int MAXIMUM_BACKOFF_EXPONENT = 16;
+
+    /**
+     * Outcome of a refresh, used to compute delay before next one
+     */
+    enum Outcome {
+        CHANGED,
+        UNCHANGED,
+        FAILED
+    }
+
+    private final ScheduledExecutorService executor;
+    private final Supplier<CompletableFuture<Outcome>> refresh;
+    private final double jitter;
+    private final long maximumBackoff;
+    private final long minimumInterval;
+    private final long maximumInterval;
+    private final DoubleSupplier random;
+    private long interval;
+    private int failures = 0;
+
+    RefreshScheduler(FeatureCacheConfiguration configuration, ScheduledExecutorService executor, Supplier<CompletableFuture<Outcome>> refresh) {
+        this(configuration, executor, refresh, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * @param configuration cache configuration, containing refresh interval and policies
+     * @param executor executor running refreshes
+     * @param refresh function performing a refresh
+     * @param random source of random numbers between 0 and 1, used for jitter
+     */
+    RefreshScheduler(FeatureCacheConfiguration configuration, ScheduledExecutorService executor, Supplier<CompletableFuture<Outcome>> refresh, DoubleSupplier random) {
+        this.executor = executor;
+        this.refresh = refresh;
+        this.random = random;
+        this.jitter = configuration.refreshJitter;
+        long configured = Math.max(1L, configuration.refreshInterval.toMillis());
+        this.minimumInterval = configuration.minimumRefreshInterval.map(Duration::toMillis).orElse(configured);
+        this.maximumInterval = configuration.maximumRefreshInterval.map(Duration::toMillis).orElse(configured);
+        this.interval = Math.min(maximumInterval, Math.max(minimumInterval, configured));
+        this.maximumBackoff = Math.max(maximumInterval, configuration.refreshMaximumBackoff.toMillis());
+    }
+
+    /**
+     * Schedule first refresh, right away or after a random part of the interval if jitter is configured
+     */
+    void start() {
+        schedule(jitter > 0 ? (long) (random.getAsDouble() * jitter * interval) : 0L);
+    }
+
+    private void run() {
+        if (executor.isShutdown()) {
+            // delayed tasks still run after shutdown, a disconnected client must not call remote Izanami again
+            LOGGER.debug("Refresh executor is shut down, stopping cache refresh");
+            return;
+        }
+        CompletableFuture<Outcome> result;
+        try {
+            result = refresh.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((outcome, error) -> {
+            if (Objects.nonNull(error)) {
+                LOGGER.error("Failed to refresh cache", error);
+            }
+            schedule(nextDelay(Objects.isNull(error) ? outcome : Outcome.FAILED));
+        });
+    }
+
+    private void schedule(long delay) {
+        try {
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Refresh executor is shut down, stopping cache refresh");
+        }
+    }
+
+    /**
+     * Update refresh state with given outcome.
+     * @param outcome outcome of last refresh
+     * @return delay before next refresh, in milliseconds
+     */
+    synchronized long nextDelay(Outcome outcome) {
+        long delay;
+        if (outcome == Outcome.FAILED) {
+            failures = Math.min(failures + 1, MAXIMUM_BACKOFF_EXPONENT);
+            delay = Math.min(maximumBackoff, interval << failures);
+        } else {
+            failures = 0;
+            if (outcome == Outcome.CHANGED) {
+                interval = Math.max(minimumInterval, interval / 2);
+            } else {
+                // grows by at least a millisecond, otherwise a 1ms interval would never grow
+                interval = Math.min(maximumInterval, Math.max(interval + 1, interval + interval / 2));
+            }
+            delay = interval;
+        }
+        if (jitter > 0) {
+            delay = Math.round(delay * (1 + jitter * (2 * random.getAsDouble() - 1)));
+        }
+        return Math.max(1L, delay);
+    }
+
+    /**
+     * @return current refresh interval, without backoff and jitter
+     */
+    synchronized Duration interval() {
+        return Duration.ofMillis(interval);
+    }
+}
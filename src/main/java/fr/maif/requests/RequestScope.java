@@ -0,0 +1,38 @@
+package fr.maif.requests;
+
+import java.util.Objects;
+
+/**
+ * Parameters of a feature request that affect remote evaluation: user, context and payload.
+ * Requests with the same scope can share remote calls.
+ */
+final class RequestScope {
+    final String user;
+    final String context;
+    final String payload;
+
+    private RequestScope(String user, String context, String payload) {
+        this.user = user;
+        this.context = context;
+        this.payload = payload;
+    }
+
+    static RequestScope of(FeatureRequest request) {
+        return new RequestScope(request.user, request.context.orElse(null), request.payload.orElse(null));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RequestScope that = (RequestScope) o;
+        return Objects.equals(user, that.user)
+                && Objects.equals(context, that.context)
+                && Objects.equals(payload, that.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(user, context, payload);
+    }
+}
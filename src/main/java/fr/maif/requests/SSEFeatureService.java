@@ -1,7 +1,9 @@
 package fr.maif.requests;
 
 import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import fr.maif.ClientConfiguration;
 import fr.maif.errors.IzanamiError;
 import fr.maif.features.Feature;
@@ -26,24 +28,56 @@ import java.util.stream.Collectors;
 public class SSEFeatureService implements FeatureService {
     private static final Logger LOGGER = LoggerFactory.getLogger(SSEFeatureService.class);
     private final SSEClient sseClient;
-    private final Cache<String, Feature> cache;
-    private FeatureRequest scope = FeatureRequest.newFeatureRequest();
+    private final Cache<String, Feature<?>> cache;
+    private final FeatureResultCache results;
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private volatile FeatureRequest scope = FeatureRequest.newFeatureRequest();
     private FetchFeatureService underlying;
+    private final SnapshotWriter snapshotWriter;
     private ClientConfiguration configuration;
 
     public SSEFeatureService(ClientConfiguration clientConfiguration) {
+        this(clientConfiguration, Collections.emptySet());
+    }
+
+    /**
+     * @param clientConfiguration client configuration
+     * @param pinnedFeatures ids of features that must never be evicted from cache, such as preloaded features.
+     *                       Features of SSE scope are never evicted either.
+     */
+    public SSEFeatureService(ClientConfiguration clientConfiguration, Set<String> pinnedFeatures) {
         this.configuration = clientConfiguration;
         this.sseClient = new SSEClient(clientConfiguration);
-        this.cache = Caffeine.newBuilder().build();
+        Set<String> pinned = Set.copyOf(pinnedFeatures);
+        this.cache = FeatureCaches.newCache(
+                clientConfiguration.cacheConfiguration,
+                id -> pinned.contains(id) || scope.features.containsKey(id),
+                stats
+        );
+        this.results = new FeatureResultCache(clientConfiguration.cacheConfiguration.resultCacheMaximumSize);
         this.underlying = new FetchFeatureService(clientConfiguration);
+
+        Set<String> restored = FeatureSnapshots.load(clientConfiguration.cacheConfiguration, cache);
+        this.snapshotWriter = new SnapshotWriter(clientConfiguration.cacheConfiguration, cache);
+        if (!restored.isEmpty()) {
+            // restored features are served until connection delivers their current state
+            this.scope = scope.copy().withFeatures(restored);
+            this.sseClient.reconnectWith(scope, (connId, evtId, event) -> processEvent(event))
+                    .exceptionally(e -> {
+                        LOGGER.error("Failed to connect to retrieve current state of restored features", e);
+                        return null;
+                    });
+        }
     }
 
     private void processEvent(IzanamiEvent event) {
         LOGGER.debug("Processing event {}", event);
         if (event instanceof IzanamiEvent.FeatureStates) {
-            cache.invalidateAll();
             var featureStates = (IzanamiEvent.FeatureStates) event;
-            featureStates.features.forEach(cache::put);
+            // Features state event contains every feature of the scope, previously cached features missing from it are removed
+            FeatureCaches.applySnapshot(cache, Set.copyOf(cache.asMap().keySet()), featureStates.features);
+            results.invalidateAll();
+            snapshotWriter.schedule();
             LOGGER.debug("Done updating cache with feature states");
         } else if (event instanceof IzanamiEvent.FeatureCreated) {
             var featureCreated = (IzanamiEvent.FeatureCreated) event;
@@ -51,13 +85,37 @@ public class SSEFeatureService implements FeatureService {
         } else if (event instanceof IzanamiEvent.FeatureUpdated) {
             var featureUpdated = (IzanamiEvent.FeatureUpdated) event;
             cache.put(featureUpdated.feature.id, featureUpdated.feature);
+            results.invalidate(featureUpdated.feature.id);
         } else if (event instanceof IzanamiEvent.FeatureDeleted) {
-            cache.invalidate(((IzanamiEvent.FeatureDeleted) event).feature);
+            var featureDeleted = (IzanamiEvent.FeatureDeleted) event;
+            cache.invalidate(featureDeleted.feature);
+            results.invalidate(featureDeleted.feature);
         }
     }
 
+    @Override
+    public Collection<Feature<?>> cachedFeatures() {
+        return cache.asMap().values();
+    }
+
+    @Override
+    public Optional<Feature<?>> cachedFeature(String id) {
+        return Optional.ofNullable(cache.getIfPresent(id));
+    }
+
+    @Override
+    public CacheStats cacheStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public CacheStats resultCacheStats() {
+        return results.stats();
+    }
+
     @Override
     public CompletableFuture<Void> disconnect() {
+        snapshotWriter.close();
         return this.sseClient.close();
     }
 
@@ -77,7 +135,9 @@ public class SSEFeatureService implements FeatureService {
                     missingFeatures.add(f);
                 }
             } else {
-                maybeFeature.value(request.context.orElse(null), request.user).ifPresentOrElse(active -> {
+                results.value(maybeFeature, request.context.orElse(null), request.user, configuration.clock.millis())
+                        .or(() -> LocalScriptEvaluation.evaluate(configuration, maybeFeature, request))
+                        .ifPresentOrElse(active -> {
                     LOGGER.debug("Computing activation for {} from cache, result is {}", f.feature, active);
                     activation.put(f.feature, new Success((FeatureValue) active));
                 }, () -> scriptFeatures.add(f));
@@ -106,6 +166,7 @@ public class SSEFeatureService implements FeatureService {
             this.scope = newScope;
 
             LOGGER.debug("Requesting {} missing features", missingFeatures.size());
+            long start = System.nanoTime();
             this.sseClient.reconnectWith(newScope, (connId, evtId, event) -> {
                 LOGGER.debug("Received {} event in client", event.getClass().getSimpleName());
                 this.processEvent(event);
@@ -120,6 +181,7 @@ public class SSEFeatureService implements FeatureService {
                         missingResults.put(key, new IzanamiResult.Success(value.active));
                     });
 
+                    stats.recordLoadSuccess(System.nanoTime() - start);
                     missingFuture.complete(missingResults);
                 }
             }).exceptionally(e -> {
@@ -132,6 +194,7 @@ public class SSEFeatureService implements FeatureService {
                     LOGGER.debug("SSE reconnection cancelled previous connection");
                     return null;
                 }
+                stats.recordLoadFailure(System.nanoTime() - start);
                 LOGGER.error("Received exception while requesting missing features", e);
                 missingFuture.complete(new HashMap<>());
                 return null;
@@ -167,7 +230,7 @@ public class SSEFeatureService implements FeatureService {
                     activationWithMaybeNulls.put(id, activation.get(id));
                 }
             });
-            return new IzanamiResult(activationWithMaybeNulls, configuration.castStrategy, configuration.errorStrategy);
+            return new IzanamiResult(activationWithMaybeNulls, request.castStrategy.orElse(configuration.castStrategy), request.errorStrategy.orElse(configuration.errorStrategy));
         });
     }
 
@@ -0,0 +1,88 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.maif.ClientConfiguration;
+import fr.maif.FeatureClientErrorStrategy;
+import fr.maif.features.Feature;
+import fr.maif.features.results.IzanamiResult;
+import fr.maif.http.CircuitBreaker;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * View of a shared feature service for a single client: requests are completed with client error strategy,
+ * cast strategy and call timeout before being delegated, and disconnection releases the shared service.
+ */
+final class ScopedFeatureService implements FeatureService {
+    private final FeatureService underlying;
+    private final ClientConfiguration configuration;
+    private final Supplier<CompletableFuture<Void>> release;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    ScopedFeatureService(FeatureService underlying, ClientConfiguration configuration, Supplier<CompletableFuture<Void>> release) {
+        this.underlying = underlying;
+        this.configuration = configuration;
+        this.release = release;
+    }
+
+    @Override
+    public ClientConfiguration configuration() {
+        return configuration;
+    }
+
+    @Override
+    public CompletableFuture<Void> disconnect() {
+        if (released.compareAndSet(false, true)) {
+            return release.get();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public Collection<Feature<?>> cachedFeatures() {
+        return underlying.cachedFeatures();
+    }
+
+    @Override
+    public Optional<Feature<?>> cachedFeature(String id) {
+        return underlying.cachedFeature(id);
+    }
+
+    @Override
+    public CacheStats cacheStats() {
+        return underlying.cacheStats();
+    }
+
+    @Override
+    public CacheStats resultCacheStats() {
+        return underlying.resultCacheStats();
+    }
+
+    @Override
+    public long deduplicatedRequestCount() {
+        return underlying.deduplicatedRequestCount();
+    }
+
+    @Override
+    public long negativeCacheHitCount() {
+        return underlying.negativeCacheHitCount();
+    }
+
+    @Override
+    public Optional<CircuitBreaker> circuitBreaker() {
+        return underlying.circuitBreaker();
+    }
+
+    @Override
+    public CompletableFuture<IzanamiResult> featureValues(FeatureRequest request) {
+        var scoped = request.copy();
+        scoped.errorStrategy = request.errorStrategy.or(() -> Optional.<FeatureClientErrorStrategy<?>>of(configuration.errorStrategy));
+        scoped.castStrategy = request.castStrategy.or(() -> Optional.of(configuration.castStrategy));
+        scoped.callTimeout = request.callTimeout.or(() -> Optional.of(configuration.callTimeout));
+        return underlying.featureValues(scoped);
+    }
+}
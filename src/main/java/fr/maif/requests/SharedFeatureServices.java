@@ -0,0 +1,144 @@
+package fr.maif.requests;
+
+import fr.maif.CircuitBreakerConfiguration;
+import fr.maif.ClientConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * Process wide registry of feature services, allowing clients connected to the same Izanami instance with the same
+ * key and the same cache, clock, transport and circuit breaker settings to share a single feature cache and a single
+ * synchronization channel (polling or SSE).
+ * A shared service is disconnected when the last client using it is disconnected.
+ */
+final class SharedFeatureServices {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedFeatureServices.class);
+    private static final Map<List<Object>, Entry> SERVICES = new HashMap<>();
+
+    private SharedFeatureServices() {}
+
+    private static final class Entry {
+        final FeatureService service;
+        int clients = 0;
+
+        Entry(FeatureService service) {
+            this.service = service;
+        }
+    }
+
+    /**
+     * Retrieve service shared by clients with the same connection information, cache, clock, transport, HTTP client
+     * and circuit breaker settings, creating it with given factory if there is none. Error strategy, cast strategy and
+     * call timeout of given configuration are applied to requests of returned service, which uses HTTP client of the
+     * shared service.
+     * @param configuration settings of the client acquiring the service
+     * @param circuitBreakerConfiguration circuit breaker settings of the client acquiring the service, if any
+     * @param idsToPreload ids of features to preload, used only if service is created
+     * @param factory function creating a new service
+     * @return a service dedicated to the client, backed by the shared one
+     */
+    static FeatureService acquire(
+            ClientConfiguration configuration,
+            Optional<CircuitBreakerConfiguration> circuitBreakerConfiguration,
+            Set<String> idsToPreload,
+            BiFunction<ClientConfiguration, Set<String>, FeatureService> factory
+    ) {
+        var key = key(configuration, circuitBreakerConfiguration);
+        Entry entry;
+        synchronized (SERVICES) {
+            entry = SERVICES.get(key);
+            if (entry == null) {
+                entry = new Entry(factory.apply(configuration, idsToPreload));
+                SERVICES.put(key, entry);
+            } else {
+                LOGGER.info("Izanami client will share an existing connection to {}", configuration.connectionInformation.url);
+            }
+            entry.clients++;
+        }
+        var shared = entry.service.configuration();
+        var scoped = new ClientConfiguration(
+                shared.connectionInformation,
+                configuration.errorStrategy,
+                shared.cacheConfiguration,
+                shared.httpClient,
+                configuration.callTimeout,
+                configuration.castStrategy,
+                shared.clock,
+                shared.transportConfiguration
+        );
+        return new ScopedFeatureService(entry.service, scoped, () -> release(key));
+    }
+
+    private static CompletableFuture<Void> release(List<Object> key) {
+        Entry entry;
+        synchronized (SERVICES) {
+            entry = SERVICES.get(key);
+            if (entry == null || --entry.clients > 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            SERVICES.remove(key);
+        }
+        return entry.service.disconnect();
+    }
+
+    private static List<Object> key(ClientConfiguration configuration, Optional<CircuitBreakerConfiguration> circuitBreakerConfiguration) {
+        var connection = configuration.connectionInformation;
+        var cache = configuration.cacheConfiguration;
+        var transport = configuration.transportConfiguration;
+        return Arrays.asList(
+                String.valueOf(connection.url),
+                String.valueOf(connection.clientId),
+                String.valueOf(connection.clientSecret),
+                cache.enabled,
+                cache.useServerSentEvent,
+                cache.refreshInterval,
+                cache.refreshJitter,
+                cache.refreshMaximumBackoff,
+                cache.minimumRefreshInterval,
+                cache.maximumRefreshInterval,
+                cache.serverSentEventKeepAliveInterval,
+                cache.maximumSize,
+                cache.maximumWeight,
+                cache.refreshAfterWrite,
+                cache.expireAfterWrite,
+                cache.reloadBatchWindow,
+                cache.reloadBatchMaximumSize,
+                cache.resultCacheMaximumSize,
+                cache.scriptEvaluator,
+                cache.missBatchWindow,
+                cache.missBatchMaximumSize,
+                cache.negativeCacheTtl,
+                cache.snapshotFile,
+                // clocks, executors, evaluators and HTTP clients are compared by identity
+                configuration.clock,
+                transport.executor,
+                transport.httpVersion,
+                transport.connectTimeout,
+                transport.threadPoolSize,
+                transport.compression,
+                circuitBreakerConfiguration.map(SharedFeatureServices::circuitBreaker),
+                configuration.httpClient
+        );
+    }
+
+    private static List<Object> circuitBreaker(CircuitBreakerConfiguration breaker) {
+        return List.of(
+                breaker.failureRateThreshold,
+                breaker.slowCallRateThreshold,
+                breaker.slowCallDuration,
+                breaker.slidingWindowSize,
+                breaker.minimumNumberOfCalls,
+                breaker.waitDurationInOpenState,
+                breaker.permittedCallsInHalfOpenState
+        );
+    }
+}
@@ -0,0 +1,85 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.features.Feature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background writer of feature snapshot, so that cache updates never wait for disk.
+ * Saves requested while a write is pending are coalesced into it, and a write reads cache content when it runs,
+ * therefore only latest state is written, at most once per delay.
+ */
+final class SnapshotWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotWriter.class);
+    static final Duration DEFAULT_DELAY = Duration.ofSeconds(1L);
+    private final FeatureCacheConfiguration configuration;
+    private final Cache<String, Feature<?>> cache;
+    private final Duration delay;
+    private final Optional<ScheduledExecutorService> executor;
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    SnapshotWriter(FeatureCacheConfiguration configuration, Cache<String, Feature<?>> cache) {
+        this(configuration, cache, DEFAULT_DELAY);
+    }
+
+    SnapshotWriter(FeatureCacheConfiguration configuration, Cache<String, Feature<?>> cache, Duration delay) {
+        this.configuration = configuration;
+        this.cache = cache;
+        this.delay = delay;
+        this.executor = configuration.snapshotFile.map(file -> Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "izanami-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Request a save of cache content, does nothing if no snapshot file is configured.
+     */
+    void schedule() {
+        executor.ifPresent(scheduler -> {
+            if (pending.compareAndSet(false, true)) {
+                try {
+                    scheduler.schedule(this::write, delay.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // writer is closed, close performs last save
+                    pending.set(false);
+                }
+            }
+        });
+    }
+
+    private void write() {
+        // changes made from now on schedule another write
+        pending.set(false);
+        FeatureSnapshots.save(configuration, cache);
+    }
+
+    /**
+     * Stop background writes and save current cache content synchronously.
+     */
+    void close() {
+        executor.ifPresent(scheduler -> {
+            scheduler.shutdownNow();
+            try {
+                // a write in progress must not replace the final one
+                if (!scheduler.awaitTermination(5L, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Feature snapshot write is still in progress");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            FeatureSnapshots.save(configuration, cache);
+        });
+    }
+}
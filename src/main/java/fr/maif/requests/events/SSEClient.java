@@ -4,18 +4,27 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import fr.maif.ClientConfiguration;
+import fr.maif.TransportConfiguration;
 import fr.maif.errors.IzanamiException;
+import fr.maif.http.ContentEncoding;
 import fr.maif.http.HttpRequester;
+import fr.maif.http.IzanamiHttpClient;
 import fr.maif.http.ResponseUtils;
 import fr.maif.requests.FeatureRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Map;
@@ -49,7 +58,7 @@ public class SSEClient {
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
     /** The root sendAsync future — stored separately from queryFuture so disconnect() can cancel the HTTP exchange itself. */
-    private CompletableFuture<HttpResponse<Stream<String>>> rawFuture;
+    private CompletableFuture<HttpResponse<InputStream>> rawFuture;
     /** The terminal future of the chain (rawFuture -> thenAccept -> exceptionally). */
     private CompletableFuture<Void> queryFuture;
     private FeatureRequest request;
@@ -57,7 +66,10 @@ public class SSEClient {
 
     private final ScheduledExecutorService lifeProbeExecutorService;
 
-    private final ExecutorService executorService;
+    private final Executor executorService;
+
+    /** Executor created by this client, shut down on close. Empty if executor was provided by transport configuration. */
+    private final Optional<ExecutorService> ownedExecutorService;
 
     private final AtomicBoolean connected = new AtomicBoolean(false);
 
@@ -86,22 +98,25 @@ public class SSEClient {
                 maxToleratedDurationWithoutEvents.getSeconds(),
                 SECONDS
         );
-        this.executorService = Executors.newFixedThreadPool(2);
-        this.httpClient = createHttpClient();
+        TransportConfiguration transport = clientConfiguration.transportConfiguration;
+        this.ownedExecutorService = transport.executor.isPresent()
+                ? Optional.empty()
+                : Optional.of(IzanamiHttpClient.DefaultIzanamiHttpClient.newExecutor("izanami-sse", Math.max(2, transport.threadPoolSize)));
+        this.executorService = transport.executor.orElseGet(ownedExecutorService::get);
+        this.httpClient = createHttpClient(transport);
     }
 
     /**
-     * Creates a fresh HttpClient. HTTP/1.1 is forced because the JDK's HTTP/2
+     * Creates a fresh HttpClient. HTTP/1.1 is used unless another version is configured, because the JDK's HTTP/2
      * implementation has known bugs with long-lived SSE streams: streams are not
      * properly released on close, leading to "too many concurrent streams" errors.
      * connectTimeout covers the TCP handshake only, not the SSE stream lifetime.
      */
-    private HttpClient createHttpClient() {
+    private HttpClient createHttpClient(TransportConfiguration transport) {
         return HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
+                .version(transport.httpVersion.orElse(HttpClient.Version.HTTP_1_1))
                 .executor(this.executorService)
-                // TODO make connectTimeout configurable via ClientConfiguration
-                .connectTimeout(Duration.ofSeconds(10))
+                .connectTimeout(transport.connectTimeout)
                 .build();
     }
 
@@ -127,6 +142,9 @@ public class SSEClient {
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(new URI(url))
                     .setHeader("Izanami-Client-Id", clientConfiguration.connectionInformation.clientId)
                     .setHeader("Izanami-Client-Secret", clientConfiguration.connectionInformation.clientSecret);
+            if (clientConfiguration.transportConfiguration.compression) {
+                requestBuilder.setHeader("Accept-Encoding", ContentEncoding.ACCEPTED);
+            }
 
             Duration responseTimeout = request.getTimeout().orElse(clientConfiguration.callTimeout);
 
@@ -138,7 +156,9 @@ public class SSEClient {
 
             long myGeneration = reconnectGeneration.get();
 
-            this.rawFuture = httpClient.sendAsync(r, HttpResponse.BodyHandlers.ofLines());
+            // Body is read as a stream rather than lines so that it can be decompressed, this happens in thenAccept
+            // since reading gzip header blocks and must not be done by HTTP client internal threads
+            this.rawFuture = httpClient.sendAsync(r, HttpResponse.BodyHandlers.ofInputStream());
             this.queryFuture = this.rawFuture
                     // orTimeout scopes the timeout to the initial HTTP response only.
                     // Once thenAccept starts (response received), the SSE stream runs
@@ -150,7 +170,11 @@ public class SSEClient {
                         // this connection is stale — don't install it
                         if (reconnectGeneration.get() != myGeneration) {
                             LOGGER.debug("Stale connection detected, discarding response");
-                            resp.body().close();
+                            try {
+                                resp.body().close();
+                            } catch (IOException e) {
+                                LOGGER.debug("Failed to close stale connection", e);
+                            }
                             return;
                         }
 
@@ -164,7 +188,7 @@ public class SSEClient {
 
                         var sseMachine = new SSEStateMachine();
 
-                        this.currentConnection = resp.body();
+                        this.currentConnection = lines(resp);
 
                         this.currentConnection.map(line -> {
                                     var res = sseMachine.addLine(line);
@@ -232,6 +256,21 @@ public class SSEClient {
         }
     }
 
+    private static Stream<String> lines(HttpResponse<InputStream> response) {
+        try {
+            var reader = new BufferedReader(new InputStreamReader(ContentEncoding.decode(response.headers(), response.body()), StandardCharsets.UTF_8));
+            return reader.lines().onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public CompletableFuture<Void> disconnect() {
         synchronized (connectionLock) {
             LOGGER.info("Disconnecting from SSE endpoint");
@@ -270,7 +309,7 @@ public class SSEClient {
                 LOGGER.debug("Failed to disconnect SSE client", error);
             }
             lifeProbeExecutorService.shutdown();
-            executorService.shutdown();
+            ownedExecutorService.ifPresent(ExecutorService::shutdown);
             return useless;
         });
     }
@@ -322,7 +361,7 @@ public class SSEClient {
                     case "FEATURE_UPDATED":
                         return ResponseUtils.parseFeature(json.get("id").asText(), (ObjectNode) json.get("payload")).map(IzanamiEvent.FeatureUpdated::new);
                     case "FEATURE_STATES":
-                        return Optional.of(new IzanamiEvent.FeatureStates(ResponseUtils.parseFeatureResponse(json.get("payload").toString()).value));
+                        return Optional.of(new IzanamiEvent.FeatureStates(ResponseUtils.parseFeatureResponse(json.get("payload")).value));
                     default:
                         return Optional.empty();
                 }
@@ -2,24 +2,36 @@ package fr.maif;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.RequestMethod;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
 
 import dev.openfeature.sdk.EvaluationContext;
 import dev.openfeature.sdk.ImmutableContext;
 import dev.openfeature.sdk.Value;
 import fr.maif.errors.IzanamiException;
 import fr.maif.features.values.BooleanCastStrategy;
+import fr.maif.features.values.BooleanValue;
+import fr.maif.http.CircuitBreaker;
 import fr.maif.openfeatures.IzanamiOpenFeatureProvider;
 import fr.maif.requests.IzanamiConnectionInformation;
 import fr.maif.requests.SpecificFeatureRequest;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
@@ -258,6 +270,598 @@ public class IzanamiClientTest {
     }
 
 
+    @Test
+    public void should_evaluate_script_feature_locally_with_script_evaluator() {
+        String id = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        var featureStub = Mocks.feature("bar", false).withOverload(overload(true).withScript("foo"));
+        var response = newResponse().withFeature(id, featureStub);
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+
+        mockServer.stubFor(WireMock.get("/api/v2/features?conditions=true&features=" + id)
+                .withHeader("Izanami-Client-Id", equalTo(clientId))
+                .withHeader("Izanami-Client-Secret", equalTo(clientSecret))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withScriptEvaluator((feature, script, context, user, payload) -> {
+                                    if ("fail".equals(user)) {
+                                        throw new RuntimeException("Script failure");
+                                    }
+                                    return Optional.of(BooleanValue.of("foo".equals(script.name) && "benjamin".equals(user)));
+                                })
+                                .build()
+                ).build();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isFalse();
+        mockServer.resetAll();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id).withUser("benjamin")).join()).isTrue();
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id).withUser("other")).join()).isFalse();
+
+        featureStub.active = true;
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/api/v2/features"))
+                .withQueryParam("user", equalTo("fail"))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id).withUser("fail")).join()).isTrue();
+        client.close().join();
+    }
+
+    @Test
+    public void disabled_script_overload_should_not_be_evaluated_locally() {
+        String id = "4d1c7e9a-2b3f-4a8e-9c6d-7e0f1a2b3c4d";
+        var featureStub = Mocks.feature("bar", false).withOverload(overload(false).withScript("foo"));
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+
+        mockServer.stubFor(WireMock.get("/api/v2/features?conditions=true&features=" + id)
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(id, featureStub).toJson())
+                )
+        );
+
+        var evaluations = new AtomicInteger();
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withScriptEvaluator((feature, script, context, user, payload) -> {
+                                    evaluations.incrementAndGet();
+                                    return Optional.of(BooleanValue.TRUE);
+                                })
+                                .build()
+                ).build();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isFalse();
+        mockServer.resetAll();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id).withUser("benjamin")).join()).isFalse();
+        assertThat(evaluations.get()).isEqualTo(0);
+        client.close().join();
+    }
+
+    @Test
+    public void stale_while_revalidate_should_serve_stale_value_while_reloading_in_background() throws InterruptedException {
+        String id1 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        String id2 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeae";
+        var overload1 = overload(true);
+        var overload2 = overload(true);
+        var featureStub1 = Mocks.feature("bar1", true).withOverload(overload1);
+        var featureStub2 = Mocks.feature("bar2", true).withOverload(overload2);
+        var response = newResponse().withFeature(id1, featureStub1).withFeature(id2, featureStub2);
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withStaleWhileRevalidate(Duration.ofMillis(500L), Duration.ofHours(1L))
+                                .build()
+                )
+                .withPreloadedFeatures(id1, id2)
+                .build();
+        client.isLoaded().join();
+
+        overload1.enabled = false;
+        overload2.enabled = false;
+        mockServer.resetAll();
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+        Thread.sleep(600L);
+
+        var stale = client.checkFeatureActivations(newFeatureRequest().withFeatures(id1, id2)).join();
+        assertThat(stale.get(id1)).isTrue();
+        assertThat(stale.get(id2)).isTrue();
+
+        await().atMost(5, SECONDS).until(() -> !client.checkFeatureActivation(newSingleFeatureRequest(id1)).join());
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id2)).join()).isFalse();
+        // both reloads are grouped in a single call
+        assertThat(mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url)).build()).getCount()).isEqualTo(1);
+        // preloading call and two background reloads
+        assertThat(client.cacheStats().loadSuccessCount()).isEqualTo(3);
+        client.close().join();
+    }
+
+    @Test
+    public void stale_while_revalidate_should_honor_reload_batch_maximum_size() throws InterruptedException {
+        String id1 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        String id2 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeae";
+        var featureStub1 = Mocks.feature("bar1", true).withOverload(overload(true));
+        var featureStub2 = Mocks.feature("bar2", true).withOverload(overload(true));
+        var response = newResponse().withFeature(id1, featureStub1).withFeature(id2, featureStub2);
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withStaleWhileRevalidate(Duration.ofMillis(500L), Duration.ofHours(1L), Duration.ofSeconds(10L), 1)
+                                .build()
+                )
+                .withPreloadedFeatures(id1, id2)
+                .build();
+        client.isLoaded().join();
+
+        mockServer.resetRequests();
+        Thread.sleep(600L);
+        client.checkFeatureActivations(newFeatureRequest().withFeatures(id1, id2)).join();
+
+        // each reload fills a batch, none waits for the window end
+        await().atMost(5, SECONDS).until(() -> mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url)).build()).getCount() == 2);
+        client.close().join();
+    }
+
+    @Test
+    public void concurrent_misses_should_share_a_single_remote_call() {
+        String id = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        var featureStub = Mocks.feature("bar", true).withOverload(overload(true));
+        var response = newResponse().withFeature(id, featureStub);
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                        .withFixedDelay(300)
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder().enabled(false).build()
+                ).build();
+
+        var results = new ArrayList<CompletableFuture<Boolean>>();
+        for (int i = 0; i < 10; i++) {
+            results.add(client.checkFeatureActivation(newSingleFeatureRequest(id).withUser("benjamin")));
+        }
+        var otherUser = client.checkFeatureActivation(newSingleFeatureRequest(id).withUser("other"));
+
+        results.forEach(result -> assertThat(result.join()).isTrue());
+        assertThat(otherUser.join()).isTrue();
+        // one call for "benjamin", one for "other"
+        assertThat(mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url)).build()).getCount()).isEqualTo(2);
+        assertThat(client.deduplicatedRequestCount()).isEqualTo(9);
+        client.close().join();
+    }
+
+    @Test
+    public void negative_cache_should_absorb_lookups_of_missing_features() {
+        String missingId = "c1f0e7a2-53a9-4c1e-9f4e-2d6b8a1f0b17";
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withNegativeCacheTtl(Duration.ofMinutes(1L))
+                                .build()
+                )
+                .withErrorStrategy(defaultValueStrategy(true, "", BigDecimal.ZERO))
+                .build();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(missingId)).join()).isTrue();
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(missingId)).join()).isTrue();
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(missingId)).join()).isTrue();
+
+        var count = mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(missingId)).build()).getCount();
+        assertThat(count).isEqualTo(1);
+        assertThat(client.negativeCacheHitCount()).isEqualTo(2);
+        client.close().join();
+    }
+
+    @Test
+    public void negative_cache_should_be_cleared_by_unchanged_refresh() {
+        String id = "5a8c2e4f-7b1d-4f3a-9c6e-0d2b4f6a8c1e";
+        String missingId = "9e1f3a5c-2d4b-4e6f-8a0c-b3d5f7a9c1e2";
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(id))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(id, Mocks.feature("bar", true).withOverload(overload(true))).toJson())
+                )
+        );
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(missingId))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withRefreshInterval(Duration.ofMillis(200L))
+                                .withNegativeCacheTtl(Duration.ofMinutes(1L))
+                                .build()
+                )
+                .withErrorStrategy(defaultValueStrategy(true, "", BigDecimal.ZERO))
+                .build();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        // first refresh parses response, following ones find it unchanged
+        await().atMost(5, SECONDS).until(() -> mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(id)).build()).getCount() >= 3);
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(missingId)).join()).isTrue();
+
+        // feature is created, while polled features don't change
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(missingId))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(missingId, Mocks.feature("baz", true).withOverload(overload(false))).toJson())
+                )
+        );
+        await().atMost(5, SECONDS).until(() -> !client.checkFeatureActivation(newSingleFeatureRequest(missingId)).join());
+        client.close().join();
+    }
+
+    @Test
+    public void shared_clients_should_share_cache_but_keep_their_error_strategy() {
+        String id = "3b9a1e54-8f7d-4c2a-a1b6-5e0d9c7f2a31";
+        String missingId = "d84f2c1e-6a3b-4e9d-b7c0-1f5e8a2d4c96";
+        String clientId = "SHARED_CLIENT_ID_FOR_TEST_PURPOSE";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(id, Mocks.feature("bar", true).withOverload(overload(true))).toJson())
+                )
+        );
+
+        Function<Boolean, IzanamiClient> newClient = defaultValue -> IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withRefreshInterval(Duration.ofMinutes(5L))
+                                .build()
+                )
+                .withErrorStrategy(defaultValueStrategy(defaultValue, "", BigDecimal.ZERO))
+                .withSharedConnection()
+                .build();
+        var first = newClient.apply(true);
+        var second = newClient.apply(false);
+
+        assertThat(first.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        assertThat(second.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        var count = mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(id)).build()).getCount();
+        assertThat(count).isEqualTo(1);
+
+        assertThat(first.checkFeatureActivation(newSingleFeatureRequest(missingId)).join()).isTrue();
+        assertThat(second.checkFeatureActivation(newSingleFeatureRequest(missingId)).join()).isFalse();
+
+        first.close().join();
+        assertThat(second.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        second.close().join();
+    }
+
+    @Test
+    public void shared_clients_with_different_cache_settings_should_not_share_cache() {
+        String id = "7c4e2a9b-1d3f-4e8a-b5c6-2f9d0e1a3b47";
+        String clientId = "SHARED_CLIENT_ID_FOR_TEST_PURPOSE";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(id, Mocks.feature("bar", true).withOverload(overload(true))).toJson())
+                )
+        );
+
+        Function<Duration, IzanamiClient> newClient = refreshInterval -> IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withRefreshInterval(refreshInterval)
+                                .build()
+                )
+                .withSharedConnection()
+                .build();
+        var first = newClient.apply(Duration.ofMinutes(5L));
+        var second = newClient.apply(Duration.ofMinutes(10L));
+
+        assertThat(first.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        assertThat(second.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        var count = mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(id)).build()).getCount();
+        assertThat(count).isEqualTo(2);
+
+        first.close().join();
+        second.close().join();
+    }
+
+    @Test
+    public void shared_clients_should_share_http_client_and_circuit_breaker() {
+        String failingId = "e1b7c3d9-2a4f-4c6e-8b0d-5f7a9c1e3b25";
+        String clientId = "SHARED_CLIENT_ID_FOR_TEST_PURPOSE";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(failingId))
+                .willReturn(WireMock.serverError())
+        );
+
+        Supplier<IzanamiClient> newClient = () -> IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withTransportConfiguration(TransportConfiguration.newBuilder().withPrewarm(true).build())
+                .withCircuitBreaker(
+                        CircuitBreakerConfiguration.newBuilder()
+                                .withSlidingWindow(1, 1)
+                                .withWaitDurationInOpenState(Duration.ofMinutes(1L))
+                                .build()
+                )
+                .withErrorStrategy(defaultValueStrategy(false, "", BigDecimal.ZERO))
+                .withSharedConnection()
+                .build();
+        var first = newClient.get();
+        var second = newClient.get();
+        first.isLoaded().join();
+        second.isLoaded().join();
+
+        var prewarmCount = mockServer.countRequestsMatching(
+                RequestPatternBuilder.newRequestPattern(RequestMethod.HEAD, WireMock.urlEqualTo("/api")).build()).getCount();
+        assertThat(prewarmCount).isEqualTo(1);
+        assertThat(first.checkFeatureActivation(newSingleFeatureRequest(failingId)).join()).isFalse();
+        assertThat(first.circuitBreakerState()).isEqualTo(Optional.of(CircuitBreaker.State.OPEN));
+        assertThat(second.circuitBreakerState()).isEqualTo(Optional.of(CircuitBreaker.State.OPEN));
+
+        first.close().join();
+        second.close().join();
+    }
+
+    @Test
+    public void transport_configuration_should_be_applied_and_prewarm_connection() {
+        String id = "5e2b7c1d-9a4f-4b3e-8c6d-0f1a2b3c4d5e";
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(id, Mocks.feature("bar", true).withOverload(overload(true))).toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withTransportConfiguration(
+                        TransportConfiguration.newBuilder()
+                                .withHttpVersion(HttpClient.Version.HTTP_1_1)
+                                .withConnectTimeout(Duration.ofSeconds(2L))
+                                .withThreadPoolSize(2)
+                                .withPrewarm(true)
+                                .build()
+                )
+                .build();
+        client.isLoaded().join();
+
+        var prewarmCount = mockServer.countRequestsMatching(
+                RequestPatternBuilder.newRequestPattern(RequestMethod.HEAD, WireMock.urlEqualTo("/api")).build()).getCount();
+        assertThat(prewarmCount).isGreaterThanOrEqualTo(1);
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        client.close().join();
+    }
+
+    @Test
+    public void open_circuit_breaker_should_use_last_known_values_without_calling_izanami() {
+        String id = "7f3e9a2c-1b4d-4e8f-a6c5-2d9b0e1f3a47";
+        String failingId = "c2a8e4f1-5d7b-4390-8e6a-b1f0d3c5a729";
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(id))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(newResponse().withFeature(id, Mocks.feature("bar", true).withOverload(overload(true))).toJson())
+                )
+        );
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(failingId))
+                .willReturn(WireMock.serverError())
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .withRefreshInterval(Duration.ofMinutes(5L))
+                                .build()
+                )
+                .withCircuitBreaker(
+                        CircuitBreakerConfiguration.newBuilder()
+                                .withSlidingWindow(2, 2)
+                                .withWaitDurationInOpenState(Duration.ofMinutes(1L))
+                                .build()
+                )
+                .withErrorStrategy(defaultValueStrategy(false, "", BigDecimal.ZERO))
+                .build();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        assertThat(client.circuitBreakerState()).isEqualTo(Optional.of(CircuitBreaker.State.CLOSED));
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(failingId)).join()).isFalse();
+        assertThat(client.circuitBreakerState()).isEqualTo(Optional.of(CircuitBreaker.State.OPEN));
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id).ignoreCache(true)).join()).isTrue();
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(failingId)).join()).isFalse();
+        var count = mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(id)).build()).getCount();
+        var failingCount = mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url))
+                .withQueryParam("features", equalTo(failingId)).build()).getCount();
+        assertThat(count).isEqualTo(1);
+        assertThat(failingCount).isEqualTo(1);
+        client.close().join();
+    }
+
+    @Test
+    public void snapshot_should_restore_features_when_izanami_is_unreachable(@TempDir Path directory) {
+        String id = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        var featureStub = Mocks.feature("bar", true).withOverload(overload(true));
+        var response = newResponse().withFeature(id, featureStub);
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        Path snapshot = directory.resolve("features.snapshot");
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/api/v2/features"))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder().enabled(true).withSnapshotFile(snapshot).build()
+                )
+                .withPreloadedFeatures(id)
+                .build();
+        client.isLoaded().join();
+        client.close().join();
+
+        var restarted = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9998/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder().enabled(true).withSnapshotFile(snapshot).build()
+                )
+                .withErrorStrategy(defaultValueStrategy(false, "", BigDecimal.ZERO))
+                .withPreloadedFeatures(id)
+                .build();
+
+        assertThat(restarted.isLoaded().isDone()).isTrue();
+        assertThat(restarted.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        restarted.close().join();
+    }
+
     @Test
     public void should_not_use_cache_if_disabled() {
         String id = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
@@ -1238,7 +1842,43 @@ public class IzanamiClientTest {
             var localResult = client.checkFeatureActivation(newSingleFeatureRequest(id)).join();
             return !localResult;
         });
+        client.close().join();
+    }
 
+    @Test
+    public void cache_refresh_should_not_count_as_cache_hits() {
+        String id = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        var featureStub = Mocks.feature("bar1", true).withOverload(overload(true));
+        var response = newResponse().withFeature(id, featureStub);
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId("THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS")
+                                .withClientSecret("THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS")
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .withRefreshInterval(Duration.ofMillis(100L))
+                                .enabled(true)
+                                .build()
+                )
+                .build();
+
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        await().atMost(5, SECONDS).until(() -> mockServer.countRequestsMatching(getRequestedFor(WireMock.urlPathEqualTo(url)).build()).getCount() >= 4);
+
+        assertThat(client.cacheStats().hitCount()).isEqualTo(0);
+        assertThat(client.checkFeatureActivation(newSingleFeatureRequest(id)).join()).isTrue();
+        assertThat(client.cacheStats().hitCount()).isEqualTo(1);
+        client.close().join();
     }
 
     @Test
@@ -1291,7 +1931,7 @@ public class IzanamiClientTest {
 
         var localResult = client.checkFeatureActivation(newSingleFeatureRequest(id).withErrorStrategy(defaultValueStrategy(false))).join();
         assertThat(localResult).isTrue();
-
+        client.close().join();
     }
 
     @Test
@@ -1337,6 +1977,7 @@ public class IzanamiClientTest {
 
         var localResult = client.checkFeatureActivation(newSingleFeatureRequest(id).withErrorStrategy(defaultValueStrategy(false))).join();
         assertThat(localResult).isTrue();
+        client.close().join();
     }
 
     @Test
@@ -1883,4 +2524,59 @@ public class IzanamiClientTest {
         var result = openFeatureProvider.getBooleanEvaluation(id1, false, new ImmutableContext());
         assertThat(result.getValue()).isTrue();
     }
+
+    @Test
+    public void evaluate_all_should_evaluate_every_cached_feature_locally() {
+        String id1 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeaa";
+        String id2 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeae";
+        String id3 = "ae5dd05d-4e90-4ce7-bee7-3751750fdeao";
+        var featureStub1 = Mocks.feature("bar1", false).withOverload(overload(true).withCondition(condition().withRule(userListRule("foo"))));
+        var featureStub2 = Mocks.feature("bar2", "value").withOverload(overload("value", true)).withOverload("ctx", overload("ctxValue", true));
+        var featureStub3 = Mocks.feature("bar3", true).withOverload(overload(true));
+        featureStub3.project = "other";
+        var response = newResponse().withFeature(id1, featureStub1).withFeature(id2, featureStub2).withFeature(id3, featureStub3);
+        String clientId = "THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String clientSecret = "THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS";
+        String url = "/api/v2/features";
+
+        mockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(url))
+                .withQueryParam("conditions", equalTo("true"))
+                .withHeader("Izanami-Client-Id", equalTo(clientId))
+                .withHeader("Izanami-Client-Secret", equalTo(clientSecret))
+                .willReturn(WireMock.ok().withHeader("Content-Type", "application/json")
+                        .withBody(response.toJson())
+                )
+        );
+
+        var client = IzanamiClient
+                .newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:9999/api")
+                                .withClientId(clientId)
+                                .withClientSecret(clientSecret)
+                ).withCacheConfiguration(
+                        FeatureCacheConfiguration.newBuilder()
+                                .enabled(true)
+                                .build()
+                )
+                .withPreloadedFeatures(id1, id2, id3)
+                .build();
+
+        client.isLoaded().join();
+        mockServer.resetAll();
+
+        var snapshot = client.evaluateAll("foo", "ctx");
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(snapshot.booleanValue(id1)).isTrue();
+        assertThat(snapshot.stringValue(id2)).isEqualTo("ctxValue");
+        assertThat(snapshot.booleanValue(id3)).isTrue();
+
+        snapshot = client.evaluateAll("bar", null, "default");
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.booleanValue(id1)).isFalse();
+        assertThat(snapshot.stringValue(id2)).isEqualTo("value");
+        assertThat(snapshot.contains(id3)).isFalse();
+        assertThat(snapshot.booleanValue(id3)).isNull();
+        client.close().join();
+    }
 }
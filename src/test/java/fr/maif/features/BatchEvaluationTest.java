@@ -0,0 +1,71 @@
+package fr.maif.features;
+
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.FeatureOverload.StringOverload;
+import fr.maif.features.values.BooleanCastStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchEvaluationTest {
+
+    private static String[] users(int count) {
+        String[] users = new String[count];
+        for (int i = 0; i < count; i++) {
+            users[i] = "user" + i;
+        }
+        return users;
+    }
+
+    @Test
+    void testBooleanBatchMatchesSingleEvaluation() {
+        var feature = new Feature.BooleanFeature("id", "name", "project", true, Map.of(
+                "", new ClassicalOverload(false, List.of()),
+                "tenant", new ClassicalOverload(true, List.of(
+                        new ActivationCondition(null, new UserPercentage(30)),
+                        new ActivationCondition(null, new UserList(Set.of("user3")))
+                ))
+        ));
+        long now = System.currentTimeMillis();
+
+        for (int count : new int[]{0, 1, 63, 65, BatchEvaluation.CHUNK_SIZE + 1, 3 * BatchEvaluation.CHUNK_SIZE + 17}) {
+            String[] users = users(count);
+            var result = BatchEvaluation.of(feature, "tenant/shop", now).booleanValues(users, BooleanCastStrategy.LAX);
+            for (int i = 0; i < count; i++) {
+                assertEquals(feature.evaluateBoolean("tenant/shop", users[i], now), result.get(i), users[i]);
+            }
+            assertTrue(result.length() <= count);
+        }
+        assertTrue(BatchEvaluation.of(feature, "other", now).booleanValues(users(100), BooleanCastStrategy.LAX).isEmpty());
+    }
+
+    @Test
+    void testValuedBatch() {
+        var feature = new Feature.StringFeature("id", "name", "project", "default", Map.of(
+                "", new StringOverload(true, List.of(
+                        ActivationCondition.StringValuedActivationCondition.fromCondition(
+                                new ActivationCondition(null, new UserList(Set.of("user1"))), "special")
+                ), "default")
+        ));
+
+        var values = BatchEvaluation.of(feature, null, System.currentTimeMillis()).values(users(3));
+
+        assertEquals("default", values[0].stringValue());
+        assertEquals("special", values[1].stringValue());
+        assertEquals("default", values[2].stringValue());
+    }
+
+    @Test
+    void testScriptFeatureCantBeEvaluated() {
+        var feature = new Feature.BooleanFeature("id", "name", "project", true, Map.of(
+                "", new FeatureOverload.WasmFeatureOverload<>(true, new FeatureOverload.WasmConfig("script"))
+        ));
+
+        assertThrows(IzanamiException.class, () -> BatchEvaluation.of(feature, null, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,65 @@
+package fr.maif.features;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactUserSetTest {
+    @Test
+    public void should_contain_exactly_given_users() {
+        Set<String> users = Set.of("foo", "bar", "", "café", "日本😀", "user-123");
+        CompactUserSet set = CompactUserSet.copyOf(users);
+
+        assertEquals(users.size(), set.size());
+        for (String user : users) {
+            assertTrue(set.contains(user), user);
+        }
+        assertFalse(set.contains("baz"));
+        assertFalse(set.contains("caf"));
+        assertFalse(set.contains("café "));
+        assertFalse(set.contains(null));
+        assertFalse(set.contains(42));
+        assertEquals(users, new HashSet<>(set));
+        assertEquals(users, set);
+        assertEquals(users.hashCode(), set.hashCode());
+    }
+
+    @Test
+    public void should_handle_empty_and_duplicated_users() {
+        assertTrue(CompactUserSet.copyOf(List.of()).isEmpty());
+        assertFalse(CompactUserSet.copyOf(List.of()).contains(""));
+
+        CompactUserSet set = CompactUserSet.copyOf(List.of("foo", "bar", "foo"));
+        assertEquals(2, set.size());
+        assertEquals(List.of("bar", "foo"), new ArrayList<>(set));
+    }
+
+    @Test
+    public void should_handle_large_lists() {
+        List<String> users = IntStream.range(0, 100_000).mapToObj(i -> "user-" + i).collect(Collectors.toList());
+        CompactUserSet set = CompactUserSet.copyOf(users);
+
+        assertEquals(users.size(), set.size());
+        for (String user : users) {
+            assertTrue(set.contains(user));
+        }
+        for (int i = 100_000; i < 110_000; i++) {
+            assertFalse(set.contains("user-" + i));
+        }
+    }
+
+    @Test
+    public void should_share_identical_lists() {
+        CompactUserSet first = CompactUserSet.shared(List.of("foo", "bar"));
+        CompactUserSet second = CompactUserSet.shared(Set.of("bar", "foo"));
+        CompactUserSet other = CompactUserSet.shared(List.of("foo"));
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertSame(first, new UserList(Set.of("foo", "bar")).users);
+    }
+}
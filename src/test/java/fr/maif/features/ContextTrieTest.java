@@ -0,0 +1,63 @@
+package fr.maif.features;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextTrieTest {
+
+    @Test
+    void testMostSpecificContextIsUsed() {
+        ContextTrie<String> trie = new ContextTrie<>(Map.of("", "root", "foo", "foo", "foo/bar", "foobar"));
+
+        assertEquals("root", trie.resolve(null));
+        assertEquals("root", trie.resolve(""));
+        assertEquals("root", trie.resolve("baz"));
+        assertEquals("foo", trie.resolve("foo"));
+        assertEquals("foo", trie.resolve("foo/baz"));
+        assertEquals("foobar", trie.resolve("foo/bar"));
+        assertEquals("foobar", trie.resolve("foo/bar/baz"));
+    }
+
+    @Test
+    void testPartialSegmentDoesNotMatch() {
+        ContextTrie<String> trie = new ContextTrie<>(Map.of("", "root", "a/b", "ab"));
+
+        assertEquals("root", trie.resolve("a/bc"));
+        assertEquals("root", trie.resolve("a"));
+        assertEquals("ab", trie.resolve("a/b/c"));
+    }
+
+    @Test
+    void testEmptySegmentsAreIgnored() {
+        ContextTrie<String> trie = new ContextTrie<>(Map.of("", "root", "/a/b/", "ab"));
+
+        assertEquals("ab", trie.resolve("a/b"));
+        assertEquals("ab", trie.resolve("/a//b"));
+    }
+
+    @Test
+    void testMissingRootReturnsNull() {
+        ContextTrie<String> trie = new ContextTrie<>(Map.of("foo", "foo"));
+
+        assertNull(trie.resolve("bar"));
+        assertEquals("foo", trie.resolve("foo"));
+    }
+
+    @Test
+    void testManySiblings() {
+        var contexts = new java.util.HashMap<String, String>();
+        contexts.put("", "root");
+        for (int i = 0; i < 1000; i++) {
+            contexts.put("tenant" + i + "/shop", "shop" + i);
+        }
+        ContextTrie<String> trie = new ContextTrie<>(contexts);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("shop" + i, trie.resolve("tenant" + i + "/shop/1"));
+            assertEquals("root", trie.resolve("tenant" + i));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package fr.maif.features;
+
+import fr.maif.features.ActivationCondition.StringValuedActivationCondition;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.FeatureOverload.StringOverload;
+import fr.maif.features.values.BooleanCastStrategy;
+import fr.maif.features.values.BooleanValue;
+import fr.maif.features.values.StringValue;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureAllocationTest {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+    private static final int MEASURE_ROUNDS = 3;
+    /**
+     * Thread allocation counter also sees a few allocations unrelated to evaluation (JIT deoptimization, lazy JDK
+     * initialization). A single 16 bytes object per evaluation would already amount to 32 MB, far above this bound.
+     */
+    private static final long TOLERATED_ALLOCATED_BYTES = 64 * 1024;
+
+    private static long allocatedBytes() {
+        var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Feature<BooleanValue> feature() {
+        return new Feature.BooleanFeature("id", "name", "project", true, Map.of(
+                "", new ClassicalOverload(true, List.of()),
+                "tenant", new ClassicalOverload(false, List.of()),
+                "tenant/region", new ClassicalOverload(true, List.of(
+                        new ActivationCondition(null, new UserList(Set.of("foo", "bar")))
+                )),
+                "tenant/percentage", new ClassicalOverload(true, List.of(
+                        new ActivationCondition(null, new UserPercentage(50))
+                ))
+        ));
+    }
+
+    private static Feature<StringValue> stringFeature() {
+        return new Feature.StringFeature("id", "name", "project", "", Map.of(
+                "", new StringOverload(true, List.of(), "default"),
+                "tenant", new StringOverload(false, List.of(), "disabled"),
+                "tenant/region", new StringOverload(true, List.of(
+                        new StringValuedActivationCondition(null, new UserList(Set.of("foo", "bar")), "")
+                ), "regional")
+        ));
+    }
+
+    @Test
+    void testValuedBooleanEvaluationDoesNotAllocate() {
+        var feature = stringFeature();
+        String[] contexts = {"tenant/region/shop", "tenant/other", "tenant/region", null};
+        String[] users = {"foo", "baz"};
+        int actives = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            actives += feature.evaluateBoolean(contexts[i & 3], users[i & 1]) ? 1 : 0;
+        }
+
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURE_ROUNDS && allocated > TOLERATED_ALLOCATED_BYTES; round++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < ITERATIONS; i++) {
+                actives += feature.evaluateBoolean(contexts[i & 3], users[i & 1]) ? 1 : 0;
+            }
+            allocated = Math.min(allocated, allocatedBytes() - before);
+        }
+
+        assertTrue(actives > 0);
+        assertTrue(allocated <= TOLERATED_ALLOCATED_BYTES, "Evaluation allocated " + allocated + " bytes for " + ITERATIONS + " iterations");
+    }
+
+    @Test
+    void testValuedBooleanEvaluationMatchesValue() {
+        var feature = stringFeature();
+        String[] contexts = {"tenant/region/shop", "tenant/other", "tenant/region", null};
+        String[] users = {"foo", "baz"};
+
+        for (String context : contexts) {
+            for (String user : users) {
+                var value = feature.value(context, user);
+                boolean expected = value != null && value.isPresent() && value.get().booleanValue(BooleanCastStrategy.LAX);
+                assertEquals(expected, feature.evaluateBoolean(context, user), context + " " + user);
+            }
+        }
+        assertFalse(feature.evaluateBoolean("tenant/region", "foo"));
+        assertTrue(feature.evaluateBoolean("tenant/region", "baz"));
+        assertFalse(feature.evaluateBoolean("tenant", "foo"));
+    }
+
+    @Test
+    void testBooleanEvaluationDoesNotAllocate() {
+        var feature = feature();
+        String[] contexts = {"tenant/region/shop", "tenant/other", "tenant/percentage", null};
+        String[] users = {"foo", "baz"};
+        int actives = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            actives += feature.evaluateBoolean(contexts[i & 3], users[i & 1]) ? 1 : 0;
+            actives += feature.value(contexts[i & 3], users[i & 1]).get().booleanValue(null) ? 1 : 0;
+        }
+
+        // JIT compilation may still be in progress when running with the whole test suite, keep best measure
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURE_ROUNDS && allocated > TOLERATED_ALLOCATED_BYTES; round++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < ITERATIONS; i++) {
+                actives += feature.evaluateBoolean(contexts[i & 3], users[i & 1]) ? 1 : 0;
+                actives += feature.value(contexts[i & 3], users[i & 1]).get().booleanValue(null) ? 1 : 0;
+            }
+            allocated = Math.min(allocated, allocatedBytes() - before);
+        }
+
+        assertTrue(actives > 0);
+        assertTrue(allocated <= TOLERATED_ALLOCATED_BYTES, "Evaluation allocated " + allocated + " bytes for " + ITERATIONS + " iterations");
+    }
+
+    @Test
+    void testBooleanEvaluationMatchesValue() {
+        var feature = feature();
+
+        assertTrue(feature.evaluateBoolean("tenant/region", "foo"));
+        assertFalse(feature.evaluateBoolean("tenant/region", "baz"));
+        assertFalse(feature.evaluateBoolean("tenant", "foo"));
+        assertTrue(feature.evaluateBoolean(null, "baz"));
+        assertSame(BooleanValue.TRUE, feature.value("tenant/region/shop", "bar").get());
+        assertSame(BooleanValue.FALSE, feature.value("tenant/regions", "bar").get());
+    }
+}
@@ -0,0 +1,99 @@
+package fr.maif.features;
+
+import fr.maif.http.ResponseUtils;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static fr.maif.Mocks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeatureFootprintTest {
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Map<String, Feature<?>> parse(MockedIzanamiResponse response) {
+        var result = ResponseUtils.parseFeatureResponse(response.toJson());
+        assertFalse(result.isError());
+        return (Map) result.value;
+    }
+
+    private static FeatureOverload<?> defaultOverload(Feature<?> feature) {
+        return feature.conditions.values().iterator().next();
+    }
+
+    @Test
+    public void identical_definitions_should_share_instances() {
+        var features = parse(newResponse()
+                .withFeature("f1", feature("first", true).withOverload(overload(true).withCondition(condition().withRule(userListRule("foo", "bar")))))
+                .withFeature("f2", feature("second", false).withOverload(overload(true).withCondition(condition().withRule(userListRule("bar", "foo")))))
+                .withFeature("f3", feature("third", true).withOverload(overload(false).withCondition(condition().withRule(userListRule("foo", "bar"))))));
+        var first = features.get("f1");
+        var second = features.get("f2");
+        var third = features.get("f3");
+
+        assertSame(first.project, second.project);
+        assertSame(defaultOverload(first), defaultOverload(second));
+        assertNotSame(defaultOverload(first), defaultOverload(third));
+        assertSame(
+                ((FeatureOverload.ClassicalOverload) defaultOverload(first)).conditions.get(0),
+                ((FeatureOverload.ClassicalOverload) defaultOverload(third)).conditions.get(0)
+        );
+        assertTrue(second.evaluateBoolean(null, "foo"));
+        assertFalse(second.evaluateBoolean(null, "baz"));
+    }
+
+    @Test
+    public void shared_overloads_should_be_immutable() {
+        var features = parse(newResponse()
+                .withFeature("f1", feature("first", true).withOverload(overload(true).withCondition(condition().withRule(userListRule("foo", "bar"))))));
+        var overload = (FeatureOverload.ClassicalOverload) defaultOverload(features.get("f1"));
+        var users = UserList.shared(Set.of("foo", "bar")).users;
+
+        assertThrows(UnsupportedOperationException.class, () -> overload.conditions.clear());
+        assertThrows(UnsupportedOperationException.class, () -> users.add("baz"));
+    }
+
+    @Test
+    public void percentage_conditions_should_not_be_shared() {
+        var features = parse(newResponse()
+                .withFeature("f1", feature("first", true).withOverload(overload(true).withCondition(condition().withRule(percentageRule(50)))))
+                .withFeature("f2", feature("second", true).withOverload(overload(true).withCondition(condition().withRule(percentageRule(50))))));
+
+        assertNotSame(defaultOverload(features.get("f1")), defaultOverload(features.get("f2")));
+    }
+
+    @Test
+    public void equal_periods_should_be_shared() {
+        var period = new FeaturePeriod();
+        period.begin = Optional.of(Instant.parse("2024-01-01T00:00:00Z"));
+        period.timezone = ZoneId.of("Europe/Paris");
+        var same = new FeaturePeriod();
+        same.begin = Optional.of(Instant.parse("2024-01-01T00:00:00Z"));
+        same.timezone = ZoneId.of("Europe/Paris");
+
+        assertSame(FeaturePeriod.shared(period), FeaturePeriod.shared(same));
+    }
+
+    @Test
+    public void footprint_should_count_shared_instances_once() {
+        String[] users = new String[200];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "user-" + i;
+        }
+        var features = parse(newResponse()
+                .withFeature("f1", feature("first", true).withOverload(overload(true).withCondition(condition().withRule(userListRule(users)))))
+                .withFeature("f2", feature("second", true).withOverload(overload(true).withCondition(condition().withRule(userListRule(users))))));
+
+        var single = FeatureFootprint.of(List.of(features.get("f1")));
+        assertEquals(0L, single.savedSize());
+        assertEquals(features.get("f1").estimatedSize(), single.estimatedSize);
+
+        var footprint = FeatureFootprint.of(features.values());
+        assertEquals(features.get("f1").estimatedSize() + features.get("f2").estimatedSize(), footprint.unsharedSize);
+        assertTrue(footprint.savedSize() >= CompactUserSet.shared(List.of(users)).estimatedSize());
+    }
+}
@@ -0,0 +1,95 @@
+package fr.maif.features;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeaturePeriodTest {
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private static long at(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    private static HourPeriod hours(String start, String end) {
+        var period = new HourPeriod();
+        period.startTime = LocalTime.parse(start);
+        period.endTime = LocalTime.parse(end);
+        return period;
+    }
+
+    @Test
+    void testBeginAndEnd() {
+        var period = new FeaturePeriod();
+        period.begin = Optional.of(Instant.parse("2024-03-01T10:00:00Z"));
+        period.end = Optional.of(Instant.parse("2024-03-10T10:00:00Z"));
+
+        assertFalse(period.active(null, at("2024-03-01T09:59:59Z")));
+        assertFalse(period.active(null, at("2024-03-01T10:00:00Z")));
+        assertTrue(period.active(null, at("2024-03-05T10:00:00Z")));
+        assertFalse(period.active(null, at("2024-03-10T10:00:00Z")));
+    }
+
+    @Test
+    void testHourPeriodsAreEvaluatedInPeriodTimezone() {
+        var period = new FeaturePeriod();
+        period.timezone = PARIS;
+        period.hourPeriods = Set.of(hours("08:00:00", "12:00:00"), hours("14:00:00", "18:00:00"));
+
+        // Paris is UTC+1 in winter
+        assertFalse(period.active(null, at("2024-01-15T06:30:00Z")));
+        assertTrue(period.active(null, at("2024-01-15T07:30:00Z")));
+        assertFalse(period.active(null, at("2024-01-15T12:00:00Z")));
+        assertTrue(period.active(null, at("2024-01-15T15:00:00Z")));
+        // next day windows are recomputed
+        assertTrue(period.active(null, at("2024-01-16T07:30:00Z")));
+        assertFalse(period.active(null, at("2024-01-16T22:30:00Z")));
+        // going back in time works as well
+        assertTrue(period.active(null, at("2024-01-15T15:00:00Z")));
+    }
+
+    @Test
+    void testActivationDays() {
+        var days = new ActivationDayOfWeeks();
+        days.days = Set.of(DayOfWeek.MONDAY);
+        var period = new FeaturePeriod();
+        period.timezone = PARIS;
+        period.activationDays = Optional.of(days);
+
+        // 2024-01-15 is a monday
+        assertTrue(period.active(null, at("2024-01-15T12:00:00Z")));
+        assertFalse(period.active(null, at("2024-01-16T12:00:00Z")));
+        // sunday 23:30 UTC is monday 00:30 in Paris
+        assertTrue(period.active(null, at("2024-01-14T23:30:00Z")));
+    }
+
+    @Test
+    void testNextTransition() {
+        var period = new FeaturePeriod();
+        period.timezone = PARIS;
+        period.begin = Optional.of(Instant.parse("2024-01-10T10:00:00Z"));
+        period.end = Optional.of(Instant.parse("2024-01-20T10:00:00Z"));
+        period.hourPeriods = Set.of(hours("08:00:00", "12:00:00"));
+
+        // transitions are conservative, hour period start is reported even if begin is not reached yet
+        assertEquals(at("2024-01-10T07:00:00Z") + 1, period.nextTransition(at("2024-01-10T06:00:00Z")));
+        assertEquals(at("2024-01-10T10:00:00Z") + 1, period.nextTransition(at("2024-01-10T09:00:00Z")));
+        assertEquals(at("2024-01-10T11:00:00Z"), period.nextTransition(at("2024-01-10T10:30:00Z")));
+        // next day in Paris
+        assertEquals(at("2024-01-10T23:00:00Z"), period.nextTransition(at("2024-01-10T12:00:00Z")));
+        assertEquals(at("2024-01-11T07:00:00Z") + 1, period.nextTransition(at("2024-01-11T06:00:00Z")));
+        assertEquals(at("2024-01-20T10:00:00Z"), period.nextTransition(at("2024-01-20T08:00:00Z")));
+
+        var unbounded = new FeaturePeriod();
+        unbounded.end = Optional.of(Instant.parse("2024-01-20T10:00:00Z"));
+        assertEquals(at("2024-01-20T10:00:00Z"), unbounded.nextTransition(at("2024-01-10T10:00:00Z")));
+        assertEquals(Long.MAX_VALUE, unbounded.nextTransition(at("2024-01-20T10:00:00Z")));
+    }
+}
@@ -0,0 +1,138 @@
+package fr.maif.features;
+
+import fr.maif.errors.IzanamiException;
+import fr.maif.features.ActivationCondition.NumberValuedActivationCondition;
+import fr.maif.features.ActivationCondition.StringValuedActivationCondition;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.FeatureOverload.NumberOverload;
+import fr.maif.features.FeatureOverload.StringOverload;
+import fr.maif.features.FeatureOverload.WasmConfig;
+import fr.maif.features.FeatureOverload.WasmFeatureOverload;
+import fr.maif.features.values.BooleanValue;
+import fr.maif.features.values.FeatureValue;
+import fr.maif.features.values.NumberValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureSnapshotFileTest {
+    @TempDir
+    Path directory;
+
+    private static FeaturePeriod period() {
+        var hours = new HourPeriod();
+        hours.startTime = LocalTime.parse("08:00");
+        hours.endTime = LocalTime.parse("18:30");
+        var days = new ActivationDayOfWeeks();
+        days.days = EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+        var period = new FeaturePeriod();
+        period.begin = Optional.of(Instant.parse("2024-03-01T10:00:00Z"));
+        period.hourPeriods = Set.of(hours);
+        period.activationDays = Optional.of(days);
+        period.timezone = ZoneId.of("Europe/Paris");
+        return period;
+    }
+
+    private static List<Feature<?>> features() {
+        return List.of(
+                new Feature.BooleanFeature("bool", "boolean feature", "project", true, Map.of(
+                        "", new ClassicalOverload(true, List.of(new ActivationCondition(null, new UserList(Set.of("foo", "bär"))))),
+                        "tenant", new ClassicalOverload(true, List.of(new ActivationCondition(period(), new UserPercentage(30)))),
+                        "tenant/script", new WasmFeatureOverload<BooleanValue>(false, new WasmConfig("script"))
+                )),
+                new Feature.StringFeature("string", "string feature", "project", "default", Map.of(
+                        "", new StringOverload(true, List.of(new StringValuedActivationCondition(null, new UserList(Set.of("foo")), "foo value")), "base")
+                )),
+                new Feature.NumberFeature("number", "number feature", "other", new BigDecimal("1.5"), Map.of(
+                        "", new NumberOverload(true, List.of(new NumberValuedActivationCondition(period(), null, new BigDecimal("42"))), new BigDecimal("-3.25"))
+                ))
+        );
+    }
+
+    private static String describe(Optional<? extends FeatureValue> value) {
+        if (value == null) {
+            return "null";
+        }
+        return value.map(v -> {
+            if (v instanceof BooleanValue) {
+                return "boolean " + v.booleanValue(null);
+            } else if (v instanceof NumberValue) {
+                return "number " + v.numberValue();
+            }
+            return "string " + v.stringValue();
+        }).orElse("empty");
+    }
+
+    @Test
+    void testRoundTripPreservesEvaluation() {
+        var file = directory.resolve("features.snapshot");
+        var features = features();
+        FeatureSnapshotFile.write(file, features);
+
+        var read = FeatureSnapshotFile.read(file);
+
+        assertEquals(Set.of("bool", "string", "number"), read.keySet());
+        long[] instants = {
+                Instant.parse("2024-02-26T12:00:00Z").toEpochMilli(),
+                Instant.parse("2024-03-04T12:00:00Z").toEpochMilli(),
+                Instant.parse("2024-03-04T18:00:00Z").toEpochMilli(),
+                Instant.parse("2024-03-05T12:00:00Z").toEpochMilli()
+        };
+        for (Feature<?> feature : features) {
+            var copy = read.get(feature.id);
+            assertEquals(feature.name, copy.name);
+            assertEquals(feature.project, copy.project);
+            assertEquals(feature.conditions.keySet(), copy.conditions.keySet());
+            for (String context : new String[]{null, "tenant", "tenant/script"}) {
+                for (String user : new String[]{"foo", "bär", "baz", "user-12"}) {
+                    for (long now : instants) {
+                        assertEquals(describe(feature.value(context, user, now)), describe(copy.value(context, user, now)));
+                    }
+                }
+            }
+        }
+        assertEquals(new BigDecimal("-3.25"), read.get("number").value(null, "baz", instants[0]).get().numberValue());
+        assertEquals(new BigDecimal("42"), read.get("number").value(null, "baz", instants[1]).get().numberValue());
+    }
+
+    @Test
+    void testMissingFileIsEmpty() {
+        assertTrue(FeatureSnapshotFile.read(directory.resolve("missing")).isEmpty());
+    }
+
+    @Test
+    void testCorruptedFileIsRejected() throws IOException {
+        var file = directory.resolve("features.snapshot");
+        FeatureSnapshotFile.write(file, features());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertThrows(IzanamiException.class, () -> FeatureSnapshotFile.read(file));
+    }
+
+    @Test
+    void testWriteReplacesExistingFile() {
+        var file = directory.resolve("features.snapshot");
+        FeatureSnapshotFile.write(file, features());
+        FeatureSnapshotFile.write(file, features().subList(0, 1));
+
+        assertEquals(Set.of("bool"), FeatureSnapshotFile.read(file).keySet());
+        assertEquals(1, directory.toFile().list().length);
+    }
+}
@@ -0,0 +1,81 @@
+package fr.maif.features;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Murmur3Test {
+    private static final String[] CORPUS = {
+            "", "a", "ab", "abc", "abcd", "abcde", "user-1", "john.doe@maif.fr",
+            "é", "日本語", "naïve-ünïcödé", "😀", "a😀b", "\uD83D", "x\uDE00y", "\uDE00\uD83D",
+            "feature-with-a-rather-long-name-to-span-many-blocks"
+    };
+
+    private static int reference(String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        return MurmurHash3.hash32x86(bytes, 0, bytes.length, 42);
+    }
+
+    private static String randomString(Random random) {
+        var builder = new StringBuilder();
+        int length = random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(5)) {
+                case 0: builder.append((char) (0x20 + random.nextInt(0x5f))); break;
+                case 1: builder.append((char) (0x80 + random.nextInt(0x780))); break;
+                case 2: builder.append((char) (0x800 + random.nextInt(0xd000))); break;
+                case 3: builder.appendCodePoint(0x10000 + random.nextInt(0x100000)); break;
+                default: builder.append((char) (0xd800 + random.nextInt(0x800))); break;
+            }
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void testGoldenValues() {
+        assertEquals(1118731752, Murmur3.hash32x86("my-feature-foo", 42));
+        assertEquals(2092444180, Murmur3.hash32x86(Murmur3.prefix("feature-", 42), "user"));
+        assertEquals(-2104482753, Murmur3.hash32x86(Murmur3.prefix("café-", 42), "日本😀"));
+    }
+
+    @Test
+    void testCorpusMatchesReferenceImplementation() {
+        for (String feature : CORPUS) {
+            var prefix = Murmur3.prefix(feature + "-", 42);
+            for (String user : CORPUS) {
+                String value = feature + "-" + user;
+                assertEquals(reference(value), Murmur3.hash32x86(value, 42), value);
+                assertEquals(reference(value), Murmur3.hash32x86(prefix, user), value);
+            }
+        }
+    }
+
+    @Test
+    void testRandomStringsMatchReferenceImplementation() {
+        var random = new Random(42L);
+        for (int i = 0; i < 10_000; i++) {
+            String feature = randomString(random);
+            String user = randomString(random);
+            String value = feature + "-" + user;
+            assertEquals(reference(value), Murmur3.hash32x86(Murmur3.prefix(feature + "-", 42), user), value);
+        }
+    }
+
+    @Test
+    void testUserPercentageBucketing() {
+        var random = new Random(7L);
+        for (int percentage = 0; percentage <= 100; percentage += 10) {
+            var rule = new UserPercentage(percentage);
+            for (int i = 0; i < 1_000; i++) {
+                String feature = "feature" + random.nextInt(3);
+                String user = randomString(random);
+                long bucket = (Math.abs(reference(feature + "-" + user)) % 100) + 1;
+                assertEquals(bucket <= percentage, rule.active(user, feature), feature + "-" + user);
+            }
+        }
+    }
+}
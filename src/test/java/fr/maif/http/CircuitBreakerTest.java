@@ -0,0 +1,129 @@
+package fr.maif.http;
+
+import fr.maif.CircuitBreakerConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+    private static final long FAST = Duration.ofMillis(10L).toNanos();
+    private static final long SLOW = Duration.ofSeconds(2L).toNanos();
+    private final AtomicLong now = new AtomicLong(0L);
+
+    private CircuitBreaker newBreaker(CircuitBreakerConfiguration.Builder builder) {
+        return new CircuitBreaker(builder.withWaitDurationInOpenState(Duration.ofSeconds(30L)).build(), now::get);
+    }
+
+    private static void record(CircuitBreaker breaker, long duration, boolean success) {
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onResult(duration, success);
+    }
+
+    @Test
+    public void breaker_should_open_when_failure_rate_is_reached() {
+        var breaker = newBreaker(CircuitBreakerConfiguration.newBuilder().withSlidingWindow(4, 4));
+        record(breaker, FAST, true);
+        record(breaker, FAST, false);
+        record(breaker, FAST, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        record(breaker, FAST, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void breaker_should_only_consider_last_calls() {
+        var breaker = newBreaker(CircuitBreakerConfiguration.newBuilder().withSlidingWindow(4, 4));
+        record(breaker, FAST, false);
+        for (int i = 0; i < 6; i++) {
+            record(breaker, FAST, true);
+        }
+        assertEquals(0, breaker.failureRate());
+        record(breaker, FAST, false);
+        assertEquals(0.25, breaker.failureRate());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void breaker_should_open_when_slow_call_rate_is_reached() {
+        var breaker = newBreaker(CircuitBreakerConfiguration.newBuilder()
+                .withSlidingWindow(2, 2)
+                .withSlowCallRateThreshold(1, Duration.ofSeconds(1L)));
+        record(breaker, SLOW, true);
+        record(breaker, FAST, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        record(breaker, SLOW, true);
+        record(breaker, SLOW, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void half_open_breaker_should_close_after_successful_probes() {
+        var breaker = newBreaker(CircuitBreakerConfiguration.newBuilder()
+                .withSlidingWindow(2, 2)
+                .withPermittedCallsInHalfOpenState(2));
+        record(breaker, FAST, false);
+        record(breaker, FAST, false);
+        now.addAndGet(Duration.ofSeconds(29L).toNanos());
+        assertFalse(breaker.tryAcquirePermission());
+
+        now.addAndGet(Duration.ofSeconds(1L).toNanos());
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.onResult(FAST, true);
+        breaker.onResult(FAST, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void half_open_breaker_should_open_again_after_failed_probes() {
+        var breaker = newBreaker(CircuitBreakerConfiguration.newBuilder()
+                .withSlidingWindow(2, 2)
+                .withPermittedCallsInHalfOpenState(1));
+        record(breaker, FAST, false);
+        record(breaker, FAST, false);
+        now.addAndGet(Duration.ofSeconds(30L).toNanos());
+
+        record(breaker, FAST, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void open_breaker_should_reject_calls_without_reaching_underlying_client() {
+        var calls = new AtomicInteger();
+        var breaker = newBreaker(CircuitBreakerConfiguration.newBuilder().withSlidingWindow(1, 1));
+        var client = new CircuitBreakingHttpClient(request -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(new IzanamiHttpResponse("", 503));
+        }, breaker);
+
+        assertEquals(503, client.apply(new IzanamiHttpRequest()).join().status);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        var rejected = client.apply(new IzanamiHttpRequest());
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void open_breaker_should_wait_on_monotonic_time() throws InterruptedException {
+        var breaker = new CircuitBreaker(CircuitBreakerConfiguration.newBuilder()
+                .withSlidingWindow(1, 1)
+                .withWaitDurationInOpenState(Duration.ofMillis(50L))
+                .build());
+        record(breaker, FAST, false);
+        assertFalse(breaker.tryAcquirePermission());
+
+        Thread.sleep(100L);
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+}
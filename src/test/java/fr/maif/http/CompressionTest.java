@@ -0,0 +1,125 @@
+package fr.maif.http;
+
+import com.sun.net.httpserver.HttpServer;
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.IzanamiClient;
+import fr.maif.TransportConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static fr.maif.Mocks.*;
+import static fr.maif.requests.IzanamiConnectionInformation.connectionInformation;
+import static fr.maif.requests.SingleFeatureRequest.newSingleFeatureRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionTest {
+    private static final String ID = "0c4f2b7e-3d1a-4e8b-9f6c-5a2d7e1b3c48";
+    private final List<String> acceptedEncodings = new CopyOnWriteArrayList<>();
+    private final CountDownLatch stop = new CountDownLatch(1);
+    private HttpServer server;
+    private IzanamiClient client;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        stop.countDown();
+        if (client != null) {
+            client.close().join();
+        }
+        server.stop(0);
+    }
+
+    private static byte[] compress(String encoding, String content) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private void serveFeatures(String encoding) throws IOException {
+        byte[] body = compress(encoding, newResponse().withFeature(ID, feature("bar", true).withOverload(overload(true))).toJson());
+        server.createContext("/api/v2/features", exchange -> {
+            acceptedEncodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    private IzanamiClient newClient(FeatureCacheConfiguration cacheConfiguration) {
+        return IzanamiClient.newBuilder(
+                        connectionInformation()
+                                .withUrl("http://localhost:" + server.getAddress().getPort() + "/api")
+                                .withClientId("THIS_IS_NOT_A_REAL_DATA_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS")
+                                .withClientSecret("THIS_IS_NOT_A_REAL_SECRET_PLEASE_DONT_FILE_AN_ISSUE_ABOUT_THIS")
+                )
+                .withCacheConfiguration(cacheConfiguration)
+                .withTransportConfiguration(TransportConfiguration.newBuilder().withCompression(true).build())
+                .build();
+    }
+
+    @Test
+    public void gzip_feature_response_should_be_decompressed() throws IOException {
+        serveFeatures("gzip");
+        client = newClient(FeatureCacheConfiguration.newBuilder().enabled(false).build());
+
+        assertTrue(client.checkFeatureActivation(newSingleFeatureRequest(ID)).join());
+        assertEquals(List.of(ContentEncoding.ACCEPTED), acceptedEncodings);
+    }
+
+    @Test
+    public void deflate_feature_response_should_be_decompressed() throws IOException {
+        serveFeatures("deflate");
+        client = newClient(FeatureCacheConfiguration.newBuilder().enabled(true).build());
+
+        assertTrue(client.checkFeatureActivation(newSingleFeatureRequest(ID)).join());
+    }
+
+    @Test
+    public void gzip_event_stream_should_be_decompressed() {
+        String event = "id:eventid\nevent:FEATURE_STATES\ndata:"
+                + newResponse().withFeature(ID, feature("bar", true).withOverload(overload(true))).toSSEJson() + "\n\n";
+        server.createContext("/api/v2/events", exchange -> {
+            acceptedEncodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (var out = new GZIPOutputStream(exchange.getResponseBody(), true)) {
+                out.write(event.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                stop.await();
+            } catch (InterruptedException | IOException e) {
+                // connection closed by test
+            }
+        });
+        client = newClient(FeatureCacheConfiguration.newBuilder()
+                .shouldUseServerSentEvent(true)
+                .withServerSentEventKeepAliveInterval(Duration.ofSeconds(25L))
+                .build());
+
+        assertTrue(client.checkFeatureActivation(newSingleFeatureRequest(ID)).join());
+        assertEquals(ContentEncoding.ACCEPTED, acceptedEncodings.get(0));
+    }
+}
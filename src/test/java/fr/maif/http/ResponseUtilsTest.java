@@ -0,0 +1,54 @@
+package fr.maif.http;
+
+import fr.maif.features.Feature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static fr.maif.Mocks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseUtilsTest {
+    private static final String BODY = newResponse()
+            .withFeature("f1", feature("first", true).withOverload(overload(true)))
+            .withFeature("f2", feature("second", "café").withOverload(overload("thé", true)))
+            .toJson();
+
+    @Test
+    public void string_bytes_and_stream_bodies_should_give_same_features() {
+        byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+        var responses = new IzanamiHttpResponse[]{
+                new IzanamiHttpResponse(BODY, 200),
+                new IzanamiHttpResponse(bytes, 200),
+                new IzanamiHttpResponse(new ByteArrayInputStream(bytes), 200)
+        };
+        for (IzanamiHttpResponse response : responses) {
+            var result = ResponseUtils.parseFeatureResponse(response);
+            assertFalse(result.isError());
+            assertEquals(Set.of("f1", "f2"), result.value.keySet());
+            assertTrue(result.value.get("f1").evaluateBoolean(null, "user"));
+            Feature<?> second = result.value.get("f2");
+            assertEquals("thé", second.value(null, "user").get().stringValue());
+        }
+    }
+
+    @Test
+    public void stream_body_should_be_buffered_when_read_as_string() {
+        var response = new IzanamiHttpResponse(new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)), 200);
+
+        assertNull(response.body);
+        assertEquals(BODY, response.bodyAsString());
+        assertEquals(BODY, response.bodyAsString());
+    }
+
+    @Test
+    public void invalid_bodies_should_be_errors() {
+        assertTrue(ResponseUtils.parseFeatureResponse("null").isError());
+        assertTrue(ResponseUtils.parseFeatureResponse("[]").isError());
+        assertTrue(ResponseUtils.parseFeatureResponse("{\"f1\": 42}").isError());
+        assertTrue(ResponseUtils.parseFeatureResponse("{\"f1\": {".getBytes(StandardCharsets.UTF_8)).isError());
+        assertTrue(ResponseUtils.parseFeatureResponse(new ByteArrayInputStream("not json".getBytes(StandardCharsets.UTF_8))).isError());
+    }
+}
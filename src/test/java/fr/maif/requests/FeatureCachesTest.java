@@ -0,0 +1,143 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.features.ActivationCondition;
+import fr.maif.features.Feature;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.UserList;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureCachesTest {
+    private static Feature<?> feature(String id, int users) {
+        Set<String> userList = IntStream.range(0, users).mapToObj(i -> id + "-user-" + i).collect(Collectors.toSet());
+        return new Feature.BooleanFeature(id, "name", "project", false, Map.of(
+                "", new ClassicalOverload(true, List.of(new ActivationCondition(null, new UserList(userList))))
+        ));
+    }
+
+    @Test
+    void testMaximumSizeNeverEvictsPinnedFeatures() {
+        var configuration = FeatureCacheConfiguration.newBuilder().enabled(true).withMaximumSize(10).build();
+        var cache = FeatureCaches.newCache(configuration, id -> id.startsWith("pinned"), new ConcurrentStatsCounter());
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("pinned" + i, feature("pinned" + i, 1));
+        }
+        for (int i = 0; i < 50; i++) {
+            cache.put("other" + i, feature("other" + i, 1));
+        }
+        cache.cleanUp();
+
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(cache.getIfPresent("pinned" + i));
+        }
+        assertEquals(30, cache.estimatedSize());
+        assertEquals(40, cache.stats().evictionCount());
+        assertEquals(20, cache.stats().hitCount());
+    }
+
+    @Test
+    void testMaximumWeightUsesFeatureSize() {
+        var small = feature("small", 1);
+        var large = feature("large", 10_000);
+        assertTrue(large.estimatedSize() > 10 * small.estimatedSize());
+
+        var configuration = FeatureCacheConfiguration.newBuilder().enabled(true).withMaximumWeight(large.estimatedSize()).build();
+        var cache = FeatureCaches.newCache(configuration, id -> false, new ConcurrentStatsCounter());
+        cache.put("small", small);
+        cache.put("large", large);
+        cache.put("other", feature("other", 1));
+        cache.cleanUp();
+
+        assertTrue(cache.estimatedSize() < 3);
+    }
+
+    @Test
+    void testUnboundedByDefault() {
+        var cache = FeatureCaches.newCache(FeatureCacheConfiguration.newBuilder().build(), id -> false, new ConcurrentStatsCounter());
+        for (int i = 0; i < 1000; i++) {
+            cache.put("feature" + i, feature("feature" + i, 1));
+        }
+        cache.cleanUp();
+
+        assertEquals(1000, cache.estimatedSize());
+    }
+
+    @Test
+    void testBoundsMustNotBeNegative() {
+        var builder = FeatureCacheConfiguration.newBuilder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.withMaximumSize(-1L));
+        assertThrows(IllegalArgumentException.class, () -> builder.withMaximumWeight(-1L));
+        assertDoesNotThrow(() -> builder.withMaximumSize(0L).withMaximumWeight(0L));
+    }
+
+    @Test
+    void testNegativeCacheTtlMustBePositive() {
+        var builder = FeatureCacheConfiguration.newBuilder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.withNegativeCacheTtl(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> builder.withNegativeCacheTtl(Duration.ofSeconds(-1L)));
+        assertTrue(builder.withNegativeCacheTtl(null).build().negativeCacheTtl.isEmpty());
+    }
+
+    @Test
+    void testSnapshotIsAppliedAsDiff() {
+        var cache = FeatureCaches.newCache(FeatureCacheConfiguration.newBuilder().build(), id -> false, new ConcurrentStatsCounter());
+        var kept = feature("kept", 1);
+        cache.put("kept", kept);
+        cache.put("removed", feature("removed", 1));
+        cache.put("added-meanwhile", feature("added-meanwhile", 1));
+        var refreshed = feature("kept", 2);
+        var created = feature("created", 1);
+
+        Map<String, Feature> snapshot = Map.of("kept", refreshed, "created", created);
+        var removed = FeatureCaches.applySnapshot(cache, List.of("kept", "removed"), snapshot);
+
+        assertEquals(Set.of("removed"), removed);
+        assertSame(refreshed, cache.getIfPresent("kept"));
+        assertSame(created, cache.getIfPresent("created"));
+        assertNull(cache.getIfPresent("removed"));
+        assertNotNull(cache.getIfPresent("added-meanwhile"));
+    }
+
+    @Test
+    void testReadersNeverSeeMissingFeaturesDuringRefresh() throws InterruptedException {
+        var cache = FeatureCaches.newCache(FeatureCacheConfiguration.newBuilder().build(), id -> false, new ConcurrentStatsCounter());
+        List<String> ids = IntStream.range(0, 100).mapToObj(i -> "feature" + i).collect(Collectors.toList());
+        Map<String, Feature> snapshot = ids.stream().collect(Collectors.toMap(id -> id, id -> feature(id, 1)));
+        FeatureCaches.applySnapshot(cache, List.of(), snapshot);
+
+        var missing = new AtomicInteger();
+        var running = new AtomicBoolean(true);
+        var reader = new Thread(() -> {
+            while (running.get()) {
+                for (String id : ids) {
+                    if (cache.getIfPresent(id) == null) {
+                        missing.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200; i++) {
+            FeatureCaches.applySnapshot(cache, ids, snapshot);
+        }
+        running.set(false);
+        reader.join();
+
+        assertEquals(0, missing.get());
+    }
+}
@@ -0,0 +1,154 @@
+package fr.maif.requests;
+
+import fr.maif.features.ActivationCondition;
+import fr.maif.features.Feature;
+import fr.maif.features.FeatureOverload.ClassicalOverload;
+import fr.maif.features.FeatureOverload.StringOverload;
+import fr.maif.features.FeaturePeriod;
+import fr.maif.features.UserList;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureResultCacheTest {
+    private static Feature<?> userListFeature(String id) {
+        return new Feature.BooleanFeature(id, "name", "project", false, Map.of(
+                "", new ClassicalOverload(true, List.of(new ActivationCondition(null, new UserList(Set.of("foo")))))
+        ));
+    }
+
+    @Test
+    void testResultsAreMemoized() {
+        var cache = new FeatureResultCache(100);
+        var feature = userListFeature("id");
+        long now = System.currentTimeMillis();
+
+        assertTrue(cache.value(feature, null, "foo", now).get().booleanValue(null));
+        assertTrue(cache.value(feature, null, "foo", now).get().booleanValue(null));
+        assertFalse(cache.value(feature, null, "bar", now).get().booleanValue(null));
+        assertFalse(cache.value(feature, "ctx", "foo", now).isEmpty());
+
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(3, cache.stats().missCount());
+    }
+
+    @Test
+    void testReplacedFeatureIsNotServedFromCache() {
+        var cache = new FeatureResultCache(100);
+        long now = System.currentTimeMillis();
+        cache.value(userListFeature("id"), null, "foo", now);
+
+        var updated = new Feature.BooleanFeature("id", "name", "project", false, Map.of(
+                "", new ClassicalOverload(false, List.of())
+        ));
+        assertFalse(cache.value(updated, null, "foo", now).get().booleanValue(null));
+        assertEquals(0, cache.stats().hitCount());
+    }
+
+    @Test
+    void testInvalidation() {
+        var cache = new FeatureResultCache(100);
+        var first = userListFeature("first");
+        var second = userListFeature("second");
+        long now = System.currentTimeMillis();
+        cache.value(first, null, "foo", now);
+        cache.value(second, null, "foo", now);
+
+        cache.invalidate("first");
+        cache.value(first, null, "foo", now);
+        cache.value(second, null, "foo", now);
+        assertEquals(1, cache.stats().hitCount());
+
+        cache.invalidateAll();
+        cache.value(second, null, "foo", now);
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void testInvalidationOfSeveralFeatures() {
+        var cache = new FeatureResultCache(100);
+        var first = userListFeature("first");
+        var second = userListFeature("second");
+        var third = userListFeature("third");
+        long now = System.currentTimeMillis();
+        for (var feature : List.of(first, second, third)) {
+            cache.value(feature, null, "foo", now);
+            cache.value(feature, null, "bar", now);
+        }
+        assertEquals(6, cache.indexedKeys());
+
+        cache.invalidateAll(Set.of("first", "third", "unknown"));
+        assertEquals(2, cache.indexedKeys());
+        cache.value(first, null, "foo", now);
+        cache.value(second, null, "foo", now);
+        cache.value(third, null, "foo", now);
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void testEvictedResultsAreUnindexed() {
+        var cache = new FeatureResultCache(10);
+        var feature = userListFeature("id");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            cache.value(feature, null, "user" + i, now);
+        }
+
+        await().atMost(Duration.ofSeconds(5L)).until(() -> cache.indexedKeys() <= 10);
+    }
+
+    @Test
+    void testNullResultsAreMemoized() {
+        var cache = new FeatureResultCache(100);
+        var feature = new Feature.StringFeature("id", "name", "project", "value", Map.of(
+                "", new StringOverload(false, List.of(), "value")
+        ));
+        long now = System.currentTimeMillis();
+
+        assertNull(cache.value(feature, null, "foo", now));
+        assertNull(cache.value(feature, null, "foo", now));
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    void testTimeDependentFeaturesAreMemoizedUntilNextTransition() {
+        var period = new FeaturePeriod();
+        period.begin = Optional.of(Instant.parse("2024-03-01T10:00:00Z"));
+        var feature = new Feature.BooleanFeature("id", "name", "project", false, Map.of(
+                "", new ClassicalOverload(true, List.of(new ActivationCondition(period, null)))
+        ));
+        var cache = new FeatureResultCache(100);
+        long begin = Instant.parse("2024-03-01T10:00:00Z").toEpochMilli();
+
+        assertTrue(feature.isTimeDependent());
+        assertEquals(begin + 1, feature.nextTransition(null, begin - 1000));
+        assertEquals(Long.MAX_VALUE, feature.nextTransition(null, begin + 1));
+        assertFalse(cache.value(feature, null, "foo", begin - 1000).get().booleanValue(null));
+        assertFalse(cache.value(feature, null, "foo", begin).get().booleanValue(null));
+        assertTrue(cache.value(feature, null, "foo", begin + 1).get().booleanValue(null));
+        assertTrue(cache.value(feature, null, "foo", begin + 1000).get().booleanValue(null));
+        // Evaluation instant before computation instant can't use memoized result
+        assertFalse(cache.value(feature, null, "foo", begin - 1000).get().booleanValue(null));
+        assertEquals(2, cache.stats().hitCount());
+        assertEquals(3, cache.stats().missCount());
+    }
+
+    @Test
+    void testDisabledCache() {
+        var cache = new FeatureResultCache(0);
+        var feature = userListFeature("id");
+        long now = System.currentTimeMillis();
+
+        assertTrue(cache.value(feature, null, "foo", now).get().booleanValue(null));
+        assertTrue(cache.value(feature, null, "foo", now).get().booleanValue(null));
+        assertEquals(0, cache.stats().requestCount());
+    }
+}
@@ -0,0 +1,94 @@
+package fr.maif.requests;
+
+import fr.maif.features.Feature;
+import fr.maif.http.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static fr.maif.requests.FeatureRequest.newFeatureRequest;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MissBatcherTest {
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final List<FeatureRequest> calls = new CopyOnWriteArrayList<>();
+    private final Result<Map<String, Feature>> response = new Result<>(Map.of());
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private MissBatcher batcher(Duration window, int maximumSize) {
+        return new MissBatcher(window, maximumSize, Duration.ofSeconds(10L), scheduler, request -> {
+            calls.add(request);
+            return CompletableFuture.completedFuture(response);
+        });
+    }
+
+    @Test
+    void testRequestsOfSameScopeAreSentTogether() {
+        var batcher = batcher(Duration.ofMillis(50L), 100);
+        var first = batcher.fetch(newFeatureRequest().withFeatures("f1").withUser("foo"));
+        var second = batcher.fetch(newFeatureRequest().withFeatures("f2", "f3").withUser("foo"));
+        var other = batcher.fetch(newFeatureRequest().withFeatures("f1").withUser("bar"));
+        assertTrue(calls.isEmpty());
+
+        assertSame(response, first.join());
+        assertSame(response, second.join());
+        assertSame(response, other.join());
+        assertEquals(2, calls.size());
+        var fooCall = calls.stream().filter(call -> call.user.equals("foo")).findFirst().get();
+        assertEquals(Set.of("f1", "f2", "f3"), fooCall.getFeatures());
+    }
+
+    @Test
+    void testBatchIsSentWhenFull() {
+        var batcher = batcher(Duration.ofSeconds(5L), 2);
+        var first = batcher.fetch(newFeatureRequest().withFeatures("f1"));
+        assertFalse(first.isDone());
+        var second = batcher.fetch(newFeatureRequest().withFeatures("f2"));
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(1, calls.size());
+        assertEquals(Set.of("f1", "f2"), calls.get(0).getFeatures());
+    }
+
+    @Test
+    void testBatchDoesNotExceedShortestTimeout() {
+        var batcher = batcher(Duration.ofMillis(50L), 100);
+        batcher.fetch(newFeatureRequest().withFeatures("f1").withCallTimeout(Duration.ofSeconds(5L)));
+        batcher.fetch(newFeatureRequest().withFeatures("f2").withCallTimeout(Duration.ofMillis(500L))).join();
+
+        assertEquals(1, calls.size());
+        assertTrue(calls.get(0).getTimeout().get().compareTo(Duration.ofMillis(500L)) < 0);
+    }
+
+    @Test
+    void testRequestWithTimeoutShorterThanWindowIsNotBatched() {
+        var batcher = batcher(Duration.ofMillis(50L), 100);
+        var result = batcher.fetch(newFeatureRequest().withFeatures("f1").withCallTimeout(Duration.ofMillis(20L)));
+
+        assertTrue(result.isDone());
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    void testBatchIsSentImmediatelyOnceSchedulerIsShutDown() throws InterruptedException {
+        var batcher = batcher(Duration.ofSeconds(5L), 100);
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1L, TimeUnit.SECONDS));
+
+        assertTrue(batcher.fetch(newFeatureRequest().withFeatures("f1")).isDone());
+    }
+}
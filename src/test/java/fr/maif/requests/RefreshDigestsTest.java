@@ -0,0 +1,76 @@
+package fr.maif.requests;
+
+import fr.maif.features.Feature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static fr.maif.Mocks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshDigestsTest {
+    private final Map<String, Feature<?>> cache = new HashMap<>();
+    private final RefreshDigests digests = new RefreshDigests();
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Map<String, Feature> parse(Set<String> scope, String body) {
+        var result = digests.parse(scope, body.getBytes(StandardCharsets.UTF_8), cache::get);
+        assertFalse(result.isError());
+        result.value.ifPresent(features -> cache.putAll((Map) features));
+        return result.value.orElse(null);
+    }
+
+    @Test
+    void testIdenticalBodyIsNotParsed() {
+        var body = newResponse()
+                .withFeature("f1", feature("first", true).withOverload(overload(true)))
+                .withFeature("f2", feature("second", false).withOverload(overload(false)))
+                .toJson();
+        var first = parse(Set.of("f1", "f2"), body);
+        assertEquals(Set.of("f1", "f2"), first.keySet());
+
+        assertNull(parse(Set.of("f1", "f2"), body));
+        // same body for other features must be checked
+        assertNotNull(parse(Set.of("f1", "f2", "f3"), body));
+    }
+
+    @Test
+    void testOnlyChangedFeaturesAreRebuilt() {
+        var unchanged = feature("first", true).withOverload(overload(true));
+        var changing = overload(true);
+        var scope = Set.of("f1", "f2");
+        var first = parse(scope, newResponse()
+                .withFeature("f1", unchanged)
+                .withFeature("f2", feature("second", true).withOverload(changing))
+                .toJson());
+
+        changing.enabled = false;
+        var second = parse(scope, newResponse()
+                .withFeature("f1", unchanged)
+                .withFeature("f2", feature("second", true).withOverload(changing))
+                .toJson());
+
+        assertSame(first.get("f1"), second.get("f1"));
+        assertNotSame(first.get("f2"), second.get("f2"));
+        assertFalse(second.get("f2").evaluateBoolean(null, "user"));
+    }
+
+    @Test
+    void testEvictedFeatureIsRebuilt() {
+        var body = newResponse().withFeature("f1", feature("first", true).withOverload(overload(true))).toJson();
+        var first = parse(Set.of("f1"), body);
+        cache.clear();
+
+        var second = parse(Set.of("f1", "f2"), body);
+
+        assertNotSame(first.get("f1"), second.get("f1"));
+    }
+
+    @Test
+    void testInvalidBodyIsAnError() {
+        assertTrue(digests.parse(Set.of("f1"), "not json".getBytes(StandardCharsets.UTF_8), cache::get).isError());
+    }
+}
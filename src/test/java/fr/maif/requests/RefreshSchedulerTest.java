@@ -0,0 +1,129 @@
+package fr.maif.requests;
+
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.requests.RefreshScheduler.Outcome;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshSchedulerTest {
+    private static RefreshScheduler scheduler(FeatureCacheConfiguration configuration, double random) {
+        return new RefreshScheduler(configuration, null, () -> CompletableFuture.completedFuture(Outcome.UNCHANGED), () -> random);
+    }
+
+    @Test
+    void testFixedIntervalWithoutPolicies() {
+        var configuration = FeatureCacheConfiguration.newBuilder().withRefreshInterval(Duration.ofMillis(500L)).build();
+        var scheduler = scheduler(configuration, 0.5);
+
+        assertEquals(500L, scheduler.nextDelay(Outcome.UNCHANGED));
+        assertEquals(500L, scheduler.nextDelay(Outcome.CHANGED));
+    }
+
+    @Test
+    void testBackoffWhileFailing() {
+        var configuration = FeatureCacheConfiguration.newBuilder()
+                .withRefreshInterval(Duration.ofSeconds(1L))
+                .withRefreshMaximumBackoff(Duration.ofSeconds(5L))
+                .build();
+        var scheduler = scheduler(configuration, 0.5);
+
+        assertEquals(2000L, scheduler.nextDelay(Outcome.FAILED));
+        assertEquals(4000L, scheduler.nextDelay(Outcome.FAILED));
+        assertEquals(5000L, scheduler.nextDelay(Outcome.FAILED));
+        assertEquals(5000L, scheduler.nextDelay(Outcome.FAILED));
+        assertEquals(1000L, scheduler.nextDelay(Outcome.UNCHANGED));
+        assertEquals(2000L, scheduler.nextDelay(Outcome.FAILED));
+    }
+
+    @Test
+    void testAdaptiveInterval() {
+        var configuration = FeatureCacheConfiguration.newBuilder()
+                .withRefreshInterval(Duration.ofSeconds(4L))
+                .withAdaptiveRefreshInterval(Duration.ofSeconds(1L), Duration.ofSeconds(10L))
+                .build();
+        var scheduler = scheduler(configuration, 0.5);
+
+        assertEquals(2000L, scheduler.nextDelay(Outcome.CHANGED));
+        assertEquals(1000L, scheduler.nextDelay(Outcome.CHANGED));
+        assertEquals(1000L, scheduler.nextDelay(Outcome.CHANGED));
+        assertEquals(1500L, scheduler.nextDelay(Outcome.UNCHANGED));
+        for (int i = 0; i < 10; i++) {
+            scheduler.nextDelay(Outcome.UNCHANGED);
+        }
+        assertEquals(Duration.ofSeconds(10L), scheduler.interval());
+    }
+
+    @Test
+    void testAdaptiveIntervalGrowsFromOneMillisecond() {
+        var configuration = FeatureCacheConfiguration.newBuilder()
+                .withRefreshInterval(Duration.ofMillis(1L))
+                .withAdaptiveRefreshInterval(Duration.ofMillis(1L), Duration.ofMillis(10L))
+                .build();
+        var scheduler = scheduler(configuration, 0.5);
+
+        assertEquals(2L, scheduler.nextDelay(Outcome.UNCHANGED));
+        assertEquals(3L, scheduler.nextDelay(Outcome.UNCHANGED));
+        assertEquals(4L, scheduler.nextDelay(Outcome.UNCHANGED));
+        assertEquals(6L, scheduler.nextDelay(Outcome.UNCHANGED));
+    }
+
+    @Test
+    void testMaximumBackoffMustBePositive() {
+        var builder = FeatureCacheConfiguration.newBuilder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.withRefreshMaximumBackoff(null));
+        assertThrows(IllegalArgumentException.class, () -> builder.withRefreshMaximumBackoff(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> builder.withRefreshMaximumBackoff(Duration.ofSeconds(-1L)));
+    }
+
+    @Test
+    void testJitterSpreadsDelays() {
+        var configuration = FeatureCacheConfiguration.newBuilder()
+                .withRefreshInterval(Duration.ofSeconds(10L))
+                .withRefreshJitter(0.1)
+                .build();
+
+        assertEquals(9000L, scheduler(configuration, 0).nextDelay(Outcome.UNCHANGED));
+        assertEquals(11000L, scheduler(configuration, 1).nextDelay(Outcome.UNCHANGED));
+        assertEquals(10000L, scheduler(configuration, 0.5).nextDelay(Outcome.UNCHANGED));
+    }
+
+    @Test
+    void testSubSecondIntervalIsHonored() {
+        var executor = Executors.newScheduledThreadPool(1);
+        var count = new AtomicInteger();
+        var configuration = FeatureCacheConfiguration.newBuilder().withRefreshInterval(Duration.ofMillis(20L)).build();
+        new RefreshScheduler(configuration, executor, () -> {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture(Outcome.UNCHANGED);
+        }).start();
+
+        await().atMost(Duration.ofSeconds(2L)).until(() -> count.get() >= 5);
+        executor.shutdown();
+    }
+
+    @Test
+    void testNoRefreshAfterShutdown() throws InterruptedException {
+        var executor = Executors.newScheduledThreadPool(1);
+        var count = new AtomicInteger();
+        var configuration = FeatureCacheConfiguration.newBuilder().withRefreshInterval(Duration.ofMillis(100L)).build();
+        new RefreshScheduler(configuration, executor, () -> {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture(Outcome.UNCHANGED);
+        }).start();
+
+        await().atMost(Duration.ofSeconds(2L)).until(() -> count.get() >= 1);
+        executor.shutdown();
+        int refreshes = count.get();
+        assertTrue(executor.awaitTermination(1L, TimeUnit.SECONDS));
+        assertEquals(refreshes, count.get());
+    }
+}
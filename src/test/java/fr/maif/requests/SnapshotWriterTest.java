@@ -0,0 +1,73 @@
+package fr.maif.requests;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.maif.FeatureCacheConfiguration;
+import fr.maif.features.Feature;
+import fr.maif.features.FeatureSnapshotFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotWriterTest {
+    @TempDir
+    Path directory;
+
+    private static Feature<?> feature(String id) {
+        return new Feature.BooleanFeature(id, "name", "project", true, Map.of());
+    }
+
+    @Test
+    void testWritesAreDeferredAndCoalesced() {
+        var file = directory.resolve("features.snapshot");
+        var configuration = FeatureCacheConfiguration.newBuilder().enabled(true).withSnapshotFile(file).build();
+        Cache<String, Feature<?>> cache = Caffeine.newBuilder().build();
+        var writer = new SnapshotWriter(configuration, cache, Duration.ofMillis(200L));
+
+        cache.put("f1", feature("f1"));
+        writer.schedule();
+        cache.put("f2", feature("f2"));
+        writer.schedule();
+
+        assertFalse(Files.exists(file));
+        await().atMost(Duration.ofSeconds(5L)).until(() -> Files.exists(file));
+        assertEquals(Set.of("f1", "f2"), FeatureSnapshotFile.read(file).keySet());
+
+        writer.close();
+    }
+
+    @Test
+    void testCloseWritesSynchronously() {
+        var file = directory.resolve("features.snapshot");
+        var configuration = FeatureCacheConfiguration.newBuilder().enabled(true).withSnapshotFile(file).build();
+        Cache<String, Feature<?>> cache = Caffeine.newBuilder().build();
+        var writer = new SnapshotWriter(configuration, cache, Duration.ofHours(1L));
+
+        cache.put("f1", feature("f1"));
+        writer.schedule();
+        writer.close();
+
+        assertEquals(Set.of("f1"), FeatureSnapshotFile.read(file).keySet());
+    }
+
+    @Test
+    void testNothingIsWrittenWithoutSnapshotFile() {
+        var configuration = FeatureCacheConfiguration.newBuilder().enabled(true).build();
+        Cache<String, Feature<?>> cache = Caffeine.newBuilder().build();
+        var writer = new SnapshotWriter(configuration, cache, Duration.ofMillis(1L));
+
+        cache.put("f1", feature("f1"));
+        writer.schedule();
+        writer.close();
+
+        assertFalse(Files.exists(directory.resolve("features.snapshot")));
+    }
+}